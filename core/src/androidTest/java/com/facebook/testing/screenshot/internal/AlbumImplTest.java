@@ -18,12 +18,15 @@ package com.facebook.testing.screenshot.internal;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
+import static org.assertj.core.api.Assertions.offset;
 
 import android.graphics.Bitmap;
+import android.graphics.Color;
 import androidx.test.InstrumentationRegistry;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
+import java.io.FileWriter;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.After;
@@ -69,6 +72,75 @@ public class AlbumImplTest {
         .isTrue();
   }
 
+  @Test
+  public void testWriteBitmapAsync() throws Throwable {
+    Bitmap copy = mSomeBitmap.copy(Bitmap.Config.ARGB_8888, false);
+    String name = mAlbumImpl.writeBitmapAsync("async", 0, 0, copy);
+    mAlbumImpl.awaitPendingWrites();
+
+    Bitmap output = mAlbumImpl.getScreenshot(name);
+    int actualBlueness = output.getPixel(1, 1) & 0xff;
+    assertThat(actualBlueness > 0xf0)
+        .as("The pixel should be same accounting for compression")
+        .isTrue();
+  }
+
+  @Test
+  public void testUniformTilesAreDescribedInMetadata() throws Throwable {
+    mAlbumImpl.setSkipUniformTiles(true);
+    Bitmap red = Bitmap.createBitmap(10, 20, Bitmap.Config.ARGB_8888);
+    red.eraseColor(Color.RED);
+    String name = mAlbumImpl.writeBitmap("uniform", 0, 0, red);
+
+    assertThat(mAlbumImpl.getScreenshot(name)).isNull();
+
+    mAlbumImpl.addRecord(
+        new RecordBuilderImpl(null).setName("uniform").setTiling(Tiling.singleTile(name)));
+    mAlbumImpl.flush();
+    JSONObject uniformTile =
+        parseMetadata().getJSONObject(0).getJSONArray("uniformTiles").getJSONObject(0);
+
+    assertThat(uniformTile.getInt("x")).isEqualTo(0);
+    assertThat(uniformTile.getInt("y")).isEqualTo(0);
+    assertThat(uniformTile.getString("color")).isEqualTo("#ffff0000");
+    assertThat(uniformTile.getInt("width")).isEqualTo(10);
+    assertThat(uniformTile.getInt("height")).isEqualTo(20);
+  }
+
+  @Test
+  public void testTileTimingsAreSavedInMetadata() throws Throwable {
+    String name = mAlbumImpl.writeBitmap("timed", 0, 0, mSomeBitmap);
+    RecordBuilderImpl recordBuilder =
+        new RecordBuilderImpl(null).setName("timed").setTiling(Tiling.singleTile(name));
+    recordBuilder.getTimings().add(RecordTimings.DRAW, 2500000);
+    recordBuilder.getTimings().add(RecordTimings.WAIT, 100000000);
+
+    mAlbumImpl.addRecord(recordBuilder);
+    mAlbumImpl.flush();
+    JSONObject timings = parseMetadata().getJSONObject(0).getJSONObject("timings");
+
+    assertThat(timings.getDouble("draw")).isEqualTo(2.5);
+    assertThat(timings.has("encode")).isTrue();
+    assertThat(timings.has("write")).isTrue();
+    // Waiting on other records isn't part of this one's total
+    assertThat(timings.getDouble("total"))
+        .isCloseTo(
+            timings.getDouble("draw") + timings.getDouble("encode") + timings.getDouble("write"),
+            offset(0.01));
+  }
+
+  @Test
+  public void testRawTileFormats() throws Throwable {
+    for (String format : new String[] {"raw", "raw-deflate"}) {
+      mAlbumImpl.setTileFormat(format);
+      String name = mAlbumImpl.writeBitmap("raw_" + format, 0, 0, mSomeBitmap);
+
+      assertThat(mAlbumImpl.getScreenshotFile(name)).isNull();
+      Bitmap output = mAlbumImpl.getScreenshot(name);
+      assertThat(output.getPixel(1, 1)).isEqualTo(mSomeBitmap.getPixel(1, 1));
+    }
+  }
+
   @Test
   public void testMultipleBitmapsAreAvailableAfterAlbumRecreation() throws Throwable {
     String firstScreenshotName = mAlbumImpl.writeBitmap("first", 0, 0, mSomeBitmap);
@@ -143,6 +215,38 @@ public class AlbumImplTest {
     assertThat(metadataJson.getJSONObject(1).getString("name")).isEqualTo("bar");
   }
 
+  @Test
+  public void testMetadataIsJournaledBeforeFlush() throws Throwable {
+    mAlbumImpl.addRecord(
+        new RecordBuilderImpl(null).setTiling(Tiling.singleTile(mFooFile)).setName("foo"));
+    mAlbumImpl.addRecord(
+        new RecordBuilderImpl(null).setTiling(Tiling.singleTile(mBarFile)).setName("bar"));
+
+    File journal = new File(mScreenshotDirectories.get("screenshots"), "metadata.jsonl");
+    BufferedReader reader = new BufferedReader(new FileReader(journal));
+    assertThat(new JSONObject(reader.readLine()).getString("name")).isEqualTo("foo");
+    assertThat(new JSONObject(reader.readLine()).getString("name")).isEqualTo("bar");
+    assertThat(reader.readLine()).isNull();
+    reader.close();
+  }
+
+  @Test
+  public void testMetadataSkipsJournalEntriesCutShort() throws Throwable {
+    File journal = new File(mScreenshotDirectories.get("screenshots"), "metadata.jsonl");
+    FileWriter writer = new FileWriter(journal, true);
+    // As if a previous process died right after writing a nested object
+    writer.write("{\"name\":\"cut\",\"extras\":{}");
+    writer.close();
+
+    mAlbumImpl.addRecord(
+        new RecordBuilderImpl(null).setTiling(Tiling.singleTile(mFooFile)).setName("foo"));
+    mAlbumImpl.flush();
+
+    JSONArray metadataJson = parseMetadata();
+    assertThat(metadataJson.length()).isEqualTo(1);
+    assertThat(metadataJson.getJSONObject(0).getString("name")).isEqualTo("foo");
+  }
+
   @Test
   public void testSavesViewHierachy() throws Throwable {
     mAlbumImpl.writeViewHierarchyFile("foo", "");
@@ -289,5 +393,28 @@ public class AlbumImplTest {
     assertThat(relativeFileNames.length()).isEqualTo(12);
     String relativeFourthFile = relativeFileNames.getString(4);
     assertThat(relativeFourthFile).isEqualTo("baz_1_0");
+
+    JSONArray tileHashes = screenshot.getJSONArray("tileHashes");
+
+    assertThat(tileHashes.length()).isEqualTo(12);
+    assertThat(tileHashes.getString(0)).hasSize(32);
+    assertThat(tileHashes.getString(11)).isEqualTo(tileHashes.getString(0));
+  }
+
+  @Test
+  public void testTileHashesDifferForDifferentPixels() throws Throwable {
+    Bitmap other = mSomeBitmap.copy(Bitmap.Config.ARGB_8888, true);
+    other.setPixel(2, 2, 0xffff0000);
+
+    RecordBuilderImpl builder =
+        new RecordBuilderImpl(null).setName("qux").setTiling(new Tiling(2, 1));
+    builder.getTiling().setAt(0, 0, mAlbumImpl.writeBitmap("qux", 0, 0, mSomeBitmap));
+    builder.getTiling().setAt(1, 0, mAlbumImpl.writeBitmap("qux", 1, 0, other));
+
+    mAlbumImpl.addRecord(builder);
+    mAlbumImpl.flush();
+
+    JSONArray tileHashes = parseMetadata().getJSONObject(0).getJSONArray("tileHashes");
+    assertThat(tileHashes.getString(0)).isNotEqualTo(tileHashes.getString(1));
   }
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import androidx.test.filters.SdkSuppress;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for {@link BitmapPool} */
+public class BitmapPoolTest {
+  private static final long MAX_BYTES = 1024 * 1024;
+
+  private BitmapPool mBitmapPool;
+
+  @Before
+  public void setUp() throws Exception {
+    mBitmapPool = new BitmapPool(MAX_BYTES);
+  }
+
+  @Test
+  public void testAcquireReturnsExactSize() throws Throwable {
+    Bitmap bitmap = mBitmapPool.acquire(30, 20);
+    assertThat(bitmap.getWidth()).isEqualTo(30);
+    assertThat(bitmap.getHeight()).isEqualTo(20);
+    assertThat(bitmap.isMutable()).isTrue();
+  }
+
+  @Test
+  public void testReleasedBitmapIsReusedAndCleared() throws Throwable {
+    Bitmap bitmap = mBitmapPool.acquire(30, 20);
+    bitmap.eraseColor(Color.RED);
+    mBitmapPool.release(bitmap);
+
+    Bitmap reused = mBitmapPool.acquire(30, 20);
+    assertThat(reused).isSameAs(bitmap);
+    assertThat(reused.getPixel(5, 5)).isEqualTo(Color.TRANSPARENT);
+  }
+
+  @SdkSuppress(minSdkVersion = 19)
+  @Test
+  public void testBitmapIsReusedWithinTheSameBucket() throws Throwable {
+    Bitmap bitmap = mBitmapPool.acquire(60, 60);
+    mBitmapPool.release(bitmap);
+
+    Bitmap reused = mBitmapPool.acquire(50, 40);
+    assertThat(reused).isSameAs(bitmap);
+    assertThat(reused.getWidth()).isEqualTo(50);
+    assertThat(reused.getHeight()).isEqualTo(40);
+  }
+
+  @Test
+  public void testEvictsWhenOverBudget() throws Throwable {
+    Bitmap first = mBitmapPool.acquire(256, 256);
+    Bitmap second = mBitmapPool.acquire(256, 256);
+    Bitmap third = mBitmapPool.acquire(256, 256);
+    Bitmap fourth = mBitmapPool.acquire(256, 256);
+    Bitmap fifth = mBitmapPool.acquire(256, 256);
+
+    mBitmapPool.release(first);
+    mBitmapPool.release(second);
+    mBitmapPool.release(third);
+    mBitmapPool.release(fourth);
+    mBitmapPool.release(fifth);
+
+    assertThat(first.isRecycled()).isTrue();
+    assertThat(fifth.isRecycled()).isFalse();
+  }
+
+  @Test
+  public void testClearRecyclesPooledBitmaps() throws Throwable {
+    Bitmap bitmap = mBitmapPool.acquire(30, 20);
+    mBitmapPool.release(bitmap);
+    mBitmapPool.clear();
+
+    assertThat(bitmap.isRecycled()).isTrue();
+    assertThat(mBitmapPool.acquire(30, 20)).isNotSameAs(bitmap);
+  }
+}
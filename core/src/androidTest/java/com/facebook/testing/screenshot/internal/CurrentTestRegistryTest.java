@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.testing.screenshot.ScreenshotTestListener;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.Description;
+
+/** Tests {@link CurrentTestRegistry} */
+public class CurrentTestRegistryTest {
+  @After
+  public void tearDown() {
+    CurrentTestRegistry.clear();
+  }
+
+  @Test
+  public void testListenerPublishesTheCurrentTest() {
+    ScreenshotTestListener listener = new ScreenshotTestListener();
+    listener.testStarted(Description.createTestDescription("com.example.FooTest", "testBar[3]"));
+
+    assertThat(TestNameDetector.getTestClass()).isEqualTo("com.example.FooTest");
+    assertThat(TestNameDetector.getTestName()).isEqualTo("testBar");
+
+    listener.testFinished(Description.createTestDescription("com.example.FooTest", "testBar[3]"));
+    assertThat(CurrentTestRegistry.getCurrentTest()).isNull();
+  }
+
+  @Test
+  public void testListenerNamesInheritedTestsAfterTheirDeclaringClass() {
+    ScreenshotTestListener listener = new ScreenshotTestListener();
+    listener.testStarted(Description.createTestDescription(SubclassTest.class, "testInherited"));
+
+    assertThat(TestNameDetector.getTestClass()).isEqualTo(BaseTest.class.getName());
+    assertThat(TestNameDetector.getTestName()).isEqualTo("testInherited");
+  }
+
+  @Test
+  public void testFallsBackToTheStackWithoutACurrentTest() {
+    CurrentTestRegistry.clear();
+
+    assertThat(TestNameDetector.getTestName())
+        .isEqualTo("testFallsBackToTheStackWithoutACurrentTest");
+    assertThat(TestNameDetector.getTestClass())
+        .isEqualTo("com.facebook.testing.screenshot.internal.CurrentTestRegistryTest");
+  }
+
+  /** Not annotated, so that the runner doesn't pick it up */
+  public static class BaseTest {
+    public void testInherited() {}
+  }
+
+  public static class SubclassTest extends BaseTest {}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import androidx.test.InstrumentationRegistry;
+import java.io.File;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReportArtifactsManagerTest {
+  private File mRootDir;
+
+  @Before
+  public void setUp() {
+    mRootDir = new File(InstrumentationRegistry.getTargetContext().getCacheDir(), "artifacts");
+    mRootDir.mkdirs();
+  }
+
+  @After
+  public void tearDown() {
+    delete(mRootDir);
+  }
+
+  @Test
+  public void testWritesIndividualFilesByDefault() throws Throwable {
+    ReportArtifactsManager manager = new ReportArtifactsManager("run", mRootDir);
+    manager.recordFile("foo.png", new byte[] {1, 2, 3});
+
+    assertThat(manager.readFile("foo.png")).isNotNull();
+    assertThat(manager.hasFile("foo.png")).isTrue();
+    assertThat(manager.readBytes("foo.png")).isEqualTo(new byte[] {1, 2, 3});
+  }
+
+  @Test
+  public void testArchiveMode() throws Throwable {
+    ReportArtifactsManager manager = new ReportArtifactsManager("run", mRootDir, true);
+    char[] longName = new char[150];
+    Arrays.fill(longName, 'x');
+    manager.recordFile("foo.png", new byte[] {1, 2, 3});
+    manager.recordFile(new String(longName), new byte[600]);
+    manager.close();
+
+    assertThat(new File(mRootDir, "run").list()).containsExactly("artifacts_0.tar");
+    assertThat(manager.readFile("foo.png")).isNull();
+    assertThat(manager.hasFile("foo.png")).isTrue();
+    assertThat(manager.hasFile("bar.png")).isFalse();
+    assertThat(manager.readBytes("foo.png")).isEqualTo(new byte[] {1, 2, 3});
+    assertThat(manager.readBytes(new String(longName))).hasSize(600);
+  }
+
+  @Test
+  public void testArchiveModeSeesPreviousProcesses() throws Throwable {
+    ReportArtifactsManager previous = new ReportArtifactsManager("run", mRootDir, true);
+    previous.recordFile("foo.png", new byte[] {1, 2, 3});
+    previous.close();
+
+    ReportArtifactsManager manager = new ReportArtifactsManager("run", mRootDir, true);
+    manager.recordFile("bar.png", new byte[] {4});
+    manager.close();
+
+    assertThat(new File(mRootDir, "run").list())
+        .containsExactlyInAnyOrder("artifacts_0.tar", "artifacts_1.tar");
+    assertThat(manager.readBytes("foo.png")).isEqualTo(new byte[] {1, 2, 3});
+    assertThat(manager.readBytes("bar.png")).isEqualTo(new byte[] {4});
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
@@ -37,7 +37,9 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.Arrays;
 import java.util.Locale;
+import java.util.concurrent.Future;
 import org.json.JSONObject;
 import org.junit.After;
 import org.junit.Before;
@@ -97,6 +99,47 @@ public class ScreenshotImplTest {
     assertThat(mScreenshot.snap(mTextView).getTestName()).isEqualTo("testTestNameIsDetected");
   }
 
+  @Test
+  public void testRecordAll() throws Throwable {
+    RecordBuilderImpl first = mScreenshot.snap(mTextView).setName("first");
+    RecordBuilderImpl second = mScreenshot.snap(mTextView).setName("second");
+    mScreenshot.recordAll(Arrays.asList(first, second));
+    mScreenshot.flush();
+
+    String metadataContents = fileToString(mAlbumImpl.getMetadataFile());
+    OldApiBandaid.assertContainsRegex("first", metadataContents);
+    OldApiBandaid.assertContainsRegex("second", metadataContents);
+  }
+
+  @Test
+  public void testRecordAsync() throws Throwable {
+    Future<Void> future = mScreenshot.snap(mTextView).setName("async").recordAsync();
+    future.get();
+
+    assertThat(
+            new File(mScreenshotDirectories.get("verify-in-test"), "async_dump.json").exists())
+        .isTrue();
+    mScreenshot.flush();
+    OldApiBandaid.assertContainsRegex("async", fileToString(mAlbumImpl.getMetadataFile()));
+  }
+
+  @Test
+  public void testFlushRethrowsFailedAsyncRecords() throws Throwable {
+    mScreenshot.snap(mTextView).setName("duplicate").recordAsync();
+    // Fails in the background, and the returned future is ignored
+    mScreenshot.snap(mTextView).setName("duplicate").recordAsync();
+    mScreenshot.snap(mTextView).setName("first").record();
+    mScreenshot.snap(mTextView).setName("second").record();
+
+    try {
+      mScreenshot.flush();
+    } catch (AssertionError e) {
+      OldApiBandaid.assertContainsRegex("same name", e.getMessage());
+      return;
+    }
+    fail("expected exception");
+  }
+
   @Test
   public void testRecordBuilderImplHasAHierarchyDumpFile() throws Throwable {
     RecordBuilderImpl rb = mScreenshot.snap(mTextView).setName("blahblah");
@@ -155,6 +198,18 @@ public class ScreenshotImplTest {
     mScreenshot.snap(mTextView).setMaxPixels(10733760L).setName("largeView").record();
   }
 
+  @Test
+  public void testLargeViewDoesntThrowWithStreamingCapture() throws Throwable {
+    measureAndLayout(1440, 10000);
+
+    RecordBuilderImpl recordBuilder =
+        mScreenshot.snap(mTextView).setStreamingCapture(true).setName("largeView");
+    recordBuilder.record();
+    Tiling tiling = recordBuilder.getTiling();
+    assertThat(tiling.getHeight() * tiling.getTilePixelHeight()).isGreaterThanOrEqualTo(10000);
+    assertThat(recordBuilder.getImageHeight()).isEqualTo(10000);
+  }
+
   @Test
   public void testLargeViewDoesntThrowWithNoMax() throws Throwable {
     measureAndLayout(1440, 1000);
@@ -268,6 +323,12 @@ public class ScreenshotImplTest {
     doTestTiling(true);
   }
 
+  @Test
+  public void testTilingWithPictureRecording() throws Throwable {
+    mScreenshot.setEnablePictureRecording(true);
+    doTestTiling(false);
+  }
+
   @Test
   public void testCannotCallgetBitmapAfterRecord() throws Throwable {
     try {
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+/** Tests {@link TileDimensions} */
+public class TileDimensionsTest {
+  private static final long MAX_TILE_BYTES = 8L * 1024 * 1024;
+
+  @Test
+  public void testPhoneScreenIsASingleTile() {
+    TileDimensions dimensions = TileDimensions.forView(1080, 1920, MAX_TILE_BYTES);
+
+    assertThat(dimensions.getColumns(1080)).isEqualTo(1);
+    assertThat(dimensions.getRows(1920)).isEqualTo(1);
+  }
+
+  @Test
+  public void testTallViewIsCutIntoBalancedFullWidthStrips() {
+    TileDimensions dimensions = TileDimensions.forView(1080, 10000, MAX_TILE_BYTES);
+
+    assertThat(dimensions.getWidth()).isEqualTo(1080);
+    assertThat(dimensions.getWidth() * dimensions.getHeight() * 4L)
+        .isLessThanOrEqualTo(MAX_TILE_BYTES);
+    int lastRowHeight = 10000 - (dimensions.getRows(10000) - 1) * dimensions.getHeight();
+    assertThat(lastRowHeight).isGreaterThan(dimensions.getHeight() / 2);
+  }
+
+  @Test
+  public void testWideViewIsCutIntoColumns() {
+    TileDimensions dimensions = TileDimensions.forView(5000, 100, MAX_TILE_BYTES);
+
+    assertThat(dimensions.getWidth()).isLessThanOrEqualTo(TileDimensions.MAX_TILE_SIDE);
+    assertThat(dimensions.getColumns(5000)).isEqualTo(3);
+  }
+
+  @Test
+  public void testSquare() {
+    TileDimensions dimensions = TileDimensions.square(10);
+
+    assertThat(dimensions.getColumns(43)).isEqualTo(5);
+    assertThat(dimensions.getRows(32)).isEqualTo(4);
+  }
+}
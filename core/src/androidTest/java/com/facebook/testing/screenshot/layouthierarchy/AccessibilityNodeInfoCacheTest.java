@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.layouthierarchy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import androidx.test.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+import com.facebook.testing.screenshot.test.R;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests {@link AccessibilityNodeInfoCache} */
+@RunWith(AndroidJUnit4.class)
+public class AccessibilityNodeInfoCacheTest {
+  private View mView;
+
+  @Before
+  public void setUp() throws Exception {
+    mView =
+        LayoutInflater.from(InstrumentationRegistry.getTargetContext())
+            .inflate(R.layout.testing_for_view_hierarchy, null, false);
+  }
+
+  @Test
+  public void testNodeInfoIsCreatedOncePerView() {
+    AccessibilityNodeInfoCache cache = new AccessibilityNodeInfoCache();
+    View child = ((ViewGroup) mView).getChildAt(0);
+
+    assertThat(cache.get(mView)).isNotNull();
+    assertThat(cache.get(mView)).isSameAs(cache.get(mView));
+    assertThat(cache.get(child)).isNotSameAs(cache.get(mView));
+    assertThat(cache.get(null)).isNull();
+    cache.recycle();
+  }
+
+  @Test
+  public void testTreeSharesTheCacheOfItsRoot() {
+    AccessibilityUtil.AXTreeNode tree = AccessibilityUtil.generateAccessibilityTree(mView, null);
+    AccessibilityUtil.AXTreeNode child = tree.getChildren().get(0);
+
+    assertThat(child.getNodeInfoCache()).isSameAs(tree.getNodeInfoCache());
+    assertThat(child.getNodeInfo()).isSameAs(tree.getNodeInfoCache().get(child.getView()));
+    tree.recycle();
+  }
+}
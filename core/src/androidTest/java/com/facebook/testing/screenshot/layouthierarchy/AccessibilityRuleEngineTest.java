@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.layouthierarchy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import androidx.test.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+import com.facebook.testing.screenshot.test.R;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests {@link AccessibilityRuleEngine} */
+@RunWith(AndroidJUnit4.class)
+public class AccessibilityRuleEngineTest {
+  private static final AccessibilityRule ROOT_RULE =
+      new AccessibilityRule() {
+        @Override
+        public String getId() {
+          return "root";
+        }
+
+        @Override
+        public String getName() {
+          return "Root";
+        }
+
+        @Override
+        public String getDescription() {
+          return "Reports the root of the hierarchy.";
+        }
+
+        @Override
+        public @Nullable List<String> check(AccessibilityNodeSnapshot node) {
+          return node.getParent() == null
+              ? Collections.singletonList("Reported for testing.")
+              : null;
+        }
+      };
+
+  private View mView;
+  private AccessibilityUtil.AXTreeNode mTree;
+
+  @Before
+  public void setUp() throws Exception {
+    mView =
+        LayoutInflater.from(InstrumentationRegistry.getTargetContext())
+            .inflate(R.layout.testing_for_view_hierarchy, null, false);
+    mTree = AccessibilityUtil.generateAccessibilityTree(mView, null);
+  }
+
+  @After
+  public void tearDown() {
+    AccessibilityRuleEngine.removeGlobalRule(ROOT_RULE);
+    mTree.recycle();
+  }
+
+  @Test
+  public void testSnapshotMirrorsTheTree() {
+    AccessibilityNodeSnapshot snapshot = AccessibilityNodeSnapshot.capture(mTree);
+
+    assertThat(snapshot.getAllNodes()).hasSize(mTree.getAllNodes().size());
+    assertThat(snapshot.getChildren()).hasSize(mTree.getChildCount());
+    assertThat(snapshot.getClassName()).isEqualTo(mView.getClass().getName());
+    assertThat(snapshot.getChildren().get(0).getParent()).isSameAs(snapshot);
+  }
+
+  @Test
+  public void testGlobalRulesComeAfterTheBuiltInRules() throws Exception {
+    AccessibilityRuleEngine.addGlobalRule(ROOT_RULE);
+    AccessibilityRuleEngine engine = AccessibilityRuleEngine.create();
+
+    assertThat(engine.getRules())
+        .containsExactly(TalkbackFocusableWithoutSpokenFeedbackRule.getInstance(), ROOT_RULE);
+
+    JSONArray issues = engine.evaluate(AccessibilityNodeSnapshot.capture(mTree)).getIssues();
+    JSONObject evaluation = issues.getJSONObject(issues.length() - 1);
+    assertThat(evaluation.getString("id")).isEqualTo("root");
+    assertThat(evaluation.getJSONArray("elements").length()).isEqualTo(1);
+    assertThat(
+            evaluation.getJSONArray("elements").getJSONObject(0).getJSONArray("suggestions").get(0))
+        .isEqualTo("Reported for testing.");
+  }
+
+  @Test
+  public void testEngineWithoutRulesFindsNoIssues() throws Exception {
+    AccessibilityRuleEngine engine =
+        AccessibilityRuleEngine.createWithOnly(Collections.<AccessibilityRule>emptyList());
+
+    assertThat(engine.evaluate(AccessibilityNodeSnapshot.capture(mTree)).getIssues().length())
+        .isEqualTo(0);
+  }
+}
@@ -21,6 +21,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import android.graphics.Point;
 import android.graphics.Rect;
 import android.text.TextUtils;
+import android.util.JsonWriter;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -29,6 +30,7 @@ import androidx.test.InstrumentationRegistry;
 import androidx.test.runner.AndroidJUnit4;
 import com.facebook.testing.screenshot.ViewHelpers;
 import com.facebook.testing.screenshot.test.R;
+import java.io.StringWriter;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -82,6 +84,20 @@ public class LayoutHierarchyDumperTest {
         }
       };
 
+  /** Accepts views depending on the instance rather than the class */
+  private abstract static class FirstTextViewPlugin extends AbstractAttributePlugin
+      implements InstanceDependentPlugin {
+    @Override
+    public String namespace() {
+      return "First";
+    }
+
+    @Override
+    public void putAttributes(JSONObject node, Object obj, Point offset) throws JSONException {
+      put(node, "first", "true");
+    }
+  }
+
   /** Utility class to make inspecting a serialized hierarchy easier */
   static class ParsedViewDetail {
     final List<ParsedViewDetail> children = new ArrayList<>();
@@ -173,6 +189,95 @@ public class LayoutHierarchyDumperTest {
     assertThat(node.childAt(1).absoluteRect.top).isEqualTo(textViewHeight);
   }
 
+  @Test
+  public void testStreamingDumpMatchesTree() throws Throwable {
+    ViewHelpers.setupView(mView).setExactHeightPx(1000).setExactWidthPx(20000).layout();
+
+    LayoutHierarchyDumper dumper =
+        LayoutHierarchyDumper.createWith(
+            Collections.<HierarchyPlugin>emptyList(),
+            Collections.singletonList(mTextAttributePlugin));
+    StringWriter out = new StringWriter();
+    JsonWriter writer = new JsonWriter(out);
+    dumper.dumpHierarchy(mView, writer);
+    writer.close();
+
+    assertThat(new JSONObject(out.toString()).toString())
+        .isEqualTo(dumper.dumpHierarchy(mView).toString());
+  }
+
+  @Test
+  public void testVisitorDumpMatchesTree() throws Throwable {
+    ViewHelpers.setupView(mView).setExactHeightPx(1000).setExactWidthPx(20000).layout();
+
+    LayoutHierarchyDumper dumper = LayoutHierarchyDumper.create();
+    StringWriter out = new StringWriter();
+    JsonWriter writer = new JsonWriter(out);
+    new ViewTreeWalker(
+            Collections.singletonList(new LayoutHierarchyVisitor(dumper, writer, mView)))
+        .walk(mView);
+    writer.close();
+
+    assertThat(new JSONObject(out.toString()).toString())
+        .isEqualTo(dumper.dumpHierarchy(mView).toString());
+  }
+
+  @Test
+  public void testAcceptIsAskedOncePerClass() throws Throwable {
+    final List<Class<?>> accepted = new ArrayList<>();
+    AttributePlugin countingPlugin =
+        new AbstractAttributePlugin() {
+          @Override
+          public boolean accept(Object obj) {
+            accepted.add(obj.getClass());
+            return obj instanceof TextView;
+          }
+
+          @Override
+          public String namespace() {
+            return "Counting";
+          }
+
+          @Override
+          public void putAttributes(JSONObject node, Object obj, Point offset)
+              throws JSONException {
+            put(node, "counted", "true");
+          }
+        };
+
+    LayoutHierarchyDumper dumper =
+        LayoutHierarchyDumper.createWithOnly(
+            Collections.<HierarchyPlugin>singletonList(BaseViewHierarchyPlugin.getInstance()),
+            Collections.singletonList(countingPlugin));
+    JSONObject root = dumper.dumpHierarchy(mView);
+
+    assertThat(accepted).doesNotHaveDuplicates();
+    assertThat(accepted).contains(TextView.class);
+    assertThat(root.getJSONArray("children").getJSONObject(0).getString("Counting:counted"))
+        .isEqualTo("true");
+  }
+
+  @Test
+  public void testInstanceDependentPluginIsAskedForEveryObject() throws Throwable {
+    final TextView firstTextView = (TextView) ((ViewGroup) mView).getChildAt(0);
+    AttributePlugin firstTextViewPlugin =
+        new FirstTextViewPlugin() {
+          @Override
+          public boolean accept(Object obj) {
+            return obj == firstTextView;
+          }
+        };
+
+    LayoutHierarchyDumper dumper =
+        LayoutHierarchyDumper.createWithOnly(
+            Collections.<HierarchyPlugin>singletonList(BaseViewHierarchyPlugin.getInstance()),
+            Collections.singletonList(firstTextViewPlugin));
+    JSONArray children = dumper.dumpHierarchy(mView).getJSONArray("children");
+
+    assertThat(children.getJSONObject(0).has("First:first")).isTrue();
+    assertThat(children.getJSONObject(1).has("First:first")).isFalse();
+  }
+
   @Test
   public void testPluginDumps() throws Throwable {
     ViewHelpers.setupView(mView).setExactHeightPx(1000).setExactWidthPx(20000).layout();
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.layouthierarchy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import androidx.test.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+import com.facebook.testing.screenshot.test.R;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests {@link ViewTreeWalker} */
+@RunWith(AndroidJUnit4.class)
+public class ViewTreeWalkerTest {
+  private View mView;
+
+  /** Records the order in which views are entered and exited. */
+  private static class RecordingVisitor implements ViewTreeWalker.Visitor {
+    final List<String> mEvents = new ArrayList<>();
+    private final boolean mSkipDescendants;
+
+    RecordingVisitor(boolean skipDescendants) {
+      mSkipDescendants = skipDescendants;
+    }
+
+    @Override
+    public boolean enter(View view) {
+      mEvents.add("enter " + view.getClass().getSimpleName());
+      return !mSkipDescendants;
+    }
+
+    @Override
+    public void exit(View view) {
+      mEvents.add("exit " + view.getClass().getSimpleName());
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    mView =
+        LayoutInflater.from(InstrumentationRegistry.getTargetContext())
+            .inflate(R.layout.testing_for_view_hierarchy, null, false);
+  }
+
+  @Test
+  public void testVisitsEveryViewOnceInOrder() throws Throwable {
+    RecordingVisitor visitor = new RecordingVisitor(false);
+    new ViewTreeWalker(Arrays.asList(visitor)).walk(mView);
+
+    int viewCount = countViews(mView);
+    assertThat(visitor.mEvents).hasSize(2 * viewCount);
+    assertThat(visitor.mEvents.get(0)).isEqualTo("enter LinearLayout");
+    assertThat(visitor.mEvents.get(1)).isEqualTo("enter TextView");
+    assertThat(visitor.mEvents.get(2)).isEqualTo("exit TextView");
+    assertThat(visitor.mEvents.get(2 * viewCount - 1)).isEqualTo("exit LinearLayout");
+  }
+
+  @Test
+  public void testSkippingDescendantsOnlyAffectsThatVisitor() throws Throwable {
+    RecordingVisitor skipping = new RecordingVisitor(true);
+    RecordingVisitor visiting = new RecordingVisitor(false);
+    new ViewTreeWalker(Arrays.asList(skipping, visiting)).walk(mView);
+
+    assertThat(skipping.mEvents).containsExactly("enter LinearLayout");
+    assertThat(visiting.mEvents).hasSize(2 * countViews(mView));
+  }
+
+  private static int countViews(View view) {
+    int count = 1;
+    if (view instanceof ViewGroup) {
+      ViewGroup group = (ViewGroup) view;
+      for (int i = 0; i < group.getChildCount(); i++) {
+        count += countViews(group.getChildAt(i));
+      }
+    }
+    return count;
+  }
+}
@@ -17,6 +17,7 @@
 package com.facebook.testing.screenshot;
 
 import android.graphics.Bitmap;
+import java.util.concurrent.Future;
 
 /** Builds all the information related to a screenshot. */
 public interface RecordBuilder {
@@ -70,6 +71,25 @@ public interface RecordBuilder {
    */
   RecordBuilder setMaxPixels(long maxPixels);
 
+  /**
+   * Captures the view one tile at a time, holding only a bounded number of tiles in memory however
+   * large the view is. This ignores {@link #setMaxPixels}, so that very tall content can be
+   * captured in a single screenshot.
+   *
+   * <p>{@link #getBitmap()} needs the whole view in memory and can't be used with this.
+   */
+  RecordBuilder setStreamingCapture(boolean streamingCapture);
+
   /** Finish the recording. */
   void record();
+
+  /**
+   * Same as {@link #record()}, but returns as soon as the view has been drawn and its hierarchy
+   * captured, while the screenshot is written to disk in the background. The view can be changed
+   * again right away, but this builder must not be modified anymore.
+   *
+   * <p>The returned future fails if the screenshot couldn't be written. All pending screenshots are
+   * written by the time {@link ScreenshotRunner#onDestroy()} returns.
+   */
+  Future<Void> recordAsync();
 }
@@ -19,7 +19,11 @@ package com.facebook.testing.screenshot;
 import android.app.Activity;
 import android.view.View;
 import com.facebook.infer.annotation.Nullsafe;
+import com.facebook.testing.screenshot.internal.RecordBuilderImpl;
 import com.facebook.testing.screenshot.internal.ScreenshotImpl;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * A testing tool for taking a screenshot during an Activity instrumentation test. This is really
@@ -51,6 +55,26 @@ public class Screenshot {
     return ScreenshotImpl.getInstance().snapActivity(activity);
   }
 
+  /**
+   * Records all the given snapshots, same as calling {@link RecordBuilder#record()} on each of
+   * them, but drawing all their views in a single trip to the UI thread. Prefer this when a test
+   * records many screenshots, for instance one per variant of a view.
+   *
+   * <p>This method is thread safe.
+   */
+  public static void recordAll(RecordBuilder... recordBuilders) {
+    recordAll(Arrays.asList(recordBuilders));
+  }
+
+  /** Same as {@link #recordAll(RecordBuilder...)}. */
+  public static void recordAll(List<? extends RecordBuilder> recordBuilders) {
+    List<RecordBuilderImpl> recordBuilderImpls = new ArrayList<>(recordBuilders.size());
+    for (RecordBuilder recordBuilder : recordBuilders) {
+      recordBuilderImpls.add((RecordBuilderImpl) recordBuilder);
+    }
+    ScreenshotImpl.getInstance().recordAll(recordBuilderImpls);
+  }
+
   /**
    * @return The largest amount of pixels we'll capture, otherwise an exception will be thrown.
    */
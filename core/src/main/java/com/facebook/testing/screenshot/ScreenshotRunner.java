@@ -19,6 +19,7 @@ package com.facebook.testing.screenshot;
 import android.app.Instrumentation;
 import android.os.Bundle;
 import com.facebook.infer.annotation.Nullsafe;
+import com.facebook.testing.screenshot.internal.CurrentTestRegistry;
 import com.facebook.testing.screenshot.internal.Registry;
 import com.facebook.testing.screenshot.internal.ScreenshotImpl;
 
@@ -34,15 +35,79 @@ public abstract class ScreenshotRunner {
 
   public static final String SCREENSHOT_TESTS_RUN_ID = "SCREENSHOT_TESTS_RUN_ID";
 
+  /**
+   * When set to "true", tiles are stored once per unique content, named after the hash of their
+   * pixels, and screenshots refer to them through the {@code tileHashes} in the metadata.
+   */
+  public static final String DEDUPLICATE_TILES = "SCREENSHOT_TESTS_DEDUPLICATE_TILES";
+
+  /**
+   * When set to "true", the artifacts of a test run are appended to a few {@code artifacts_<n>.tar}
+   * archives instead of being written as individual files. The archives are extracted on the host
+   * when the screenshots are pulled.
+   */
+  public static final String ARCHIVE_ARTIFACTS = "SCREENSHOT_TESTS_ARCHIVE_ARTIFACTS";
+
+  /**
+   * When set to "true", tiles of a single color are not stored as images. Screenshots describe them
+   * instead through the {@code uniformTiles} in the metadata, and they're drawn back on the host.
+   */
+  public static final String SKIP_UNIFORM_TILES = "SCREENSHOT_TESTS_SKIP_UNIFORM_TILES";
+
+  /**
+   * The format tiles are stored in: "png" (the default), "raw" for the uncompressed pixels, or
+   * "raw-deflate" for the pixels compressed with the fastest deflate level. Raw tiles are much
+   * cheaper to write on device, they're converted to PNGs on the host when they're pulled.
+   */
+  public static final String TILE_FORMAT = "SCREENSHOT_TESTS_TILE_FORMAT";
+
+  public static final String TILE_FORMAT_PNG = "png";
+  public static final String TILE_FORMAT_RAW = "raw";
+  public static final String TILE_FORMAT_RAW_DEFLATE = "raw-deflate";
+
+  /**
+   * When set to "true", the {@link ScreenshotTestListener} isn't installed, and screenshots are
+   * named after the test found by walking the stack instead. This is slower, but keeps the names
+   * screenshots had before the listener: one taken from e.g. {@code @Before} or a {@code TestRule}
+   * is named after that method, or "unknown", rather than after the test method.
+   */
+  public static final String DETECT_TEST_FROM_STACK = "SCREENSHOT_TESTS_DETECT_TEST_FROM_STACK";
+
+  /** The argument {@code AndroidJUnitRunner} reads the run listeners to install from. */
+  private static final String LISTENER = "listener";
+
   /**
    * Call this exactly once in your process before any screenshots are generated.
    *
-   * <p>Typically this will be in {@code AndroidJUnitRunner#onCreate()}
+   * <p>Typically this will be in {@code AndroidJUnitRunner#onCreate()}, before calling {@code
+   * super.onCreate()} so that the {@link ScreenshotTestListener} gets installed.
    */
   public static void onCreate(Instrumentation instrumentation, Bundle arguments) {
     Registry registry = Registry.getRegistry();
     registry.instrumentation = instrumentation;
     registry.arguments = arguments;
+    if (!"true".equals(arguments.getString(DETECT_TEST_FROM_STACK))) {
+      addTestListener(arguments);
+    }
+  }
+
+  private static void addTestListener(Bundle arguments) {
+    String listener = ScreenshotTestListener.class.getName();
+    String listeners = arguments.getString(LISTENER);
+    if (listeners == null || listeners.isEmpty()) {
+      arguments.putString(LISTENER, listener);
+    } else if (!hasListener(listeners, listener)) {
+      arguments.putString(LISTENER, listeners + "," + listener);
+    }
+  }
+
+  private static boolean hasListener(String listeners, String listener) {
+    for (String entry : listeners.split(",")) {
+      if (entry.trim().equals(listener)) {
+        return true;
+      }
+    }
+    return false;
   }
 
   /**
@@ -56,5 +121,6 @@ public abstract class ScreenshotRunner {
     }
 
     Registry.clear();
+    CurrentTestRegistry.clear();
   }
 }
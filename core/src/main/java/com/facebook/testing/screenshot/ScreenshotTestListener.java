@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot;
+
+import com.facebook.infer.annotation.Nullsafe;
+import com.facebook.testing.screenshot.internal.CurrentTestRegistry;
+import org.junit.runner.Description;
+import org.junit.runner.notification.RunListener;
+
+/**
+ * Keeps track of the test that is currently running, so that screenshots can be named after it
+ * without walking the stack.
+ *
+ * <p>{@link ScreenshotRunner#onCreate} installs this automatically for {@code AndroidJUnitRunner},
+ * through its {@code listener} argument. Other runners can add it themselves.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class ScreenshotTestListener extends RunListener {
+
+  @Override
+  public void testStarted(Description description) {
+    String testName = description.getMethodName();
+    if (description.getClassName() != null && testName != null) {
+      CurrentTestRegistry.setCurrentTest(getDeclaringClassName(description, testName), testName);
+    } else {
+      CurrentTestRegistry.clear();
+    }
+  }
+
+  @Override
+  public void testFinished(Description description) {
+    CurrentTestRegistry.clear();
+  }
+
+  /**
+   * The class declaring the test method, rather than the one being run, which is what walking the
+   * stack finds: a test inherited from a base class keeps being named after the base class.
+   */
+  private static String getDeclaringClassName(Description description, String testName) {
+    Class<?> testClass = description.getTestClass();
+    if (testClass != null) {
+      int parameters = testName.indexOf('[');
+      String methodName = parameters > 0 ? testName.substring(0, parameters) : testName;
+      try {
+        return testClass.getMethod(methodName).getDeclaringClass().getName();
+      } catch (NoSuchMethodException ignored) {
+        // Not a plain test method, e.g. it takes parameters
+      }
+    }
+    return description.getClassName();
+  }
+}
@@ -19,6 +19,7 @@ package com.facebook.testing.screenshot.internal;
 import android.graphics.Bitmap;
 import com.facebook.infer.annotation.Nullsafe;
 import java.io.IOException;
+import java.io.OutputStream;
 
 /** Stores metadata about an album of screenshots during an instrumentation test run. */
 @Nullsafe(Nullsafe.Mode.LOCAL)
@@ -30,6 +31,19 @@ public interface Album {
    */
   String writeBitmap(String name, int tilei, int tilej, Bitmap bitmap) throws IOException;
 
+  /**
+   * Same as {@link #writeBitmap} except that the compression and the write happen on a background
+   * thread. The album takes ownership of {@code bitmap} and returns it to the {@link BitmapPool}
+   * once it's written, so the caller must hand over a copy it doesn't intend to draw into again.
+   *
+   * @return the name of the tile, which is valid immediately even though the tile might not be on
+   *     disk yet. Call {@link #awaitPendingWrites()} before relying on the file.
+   */
+  String writeBitmapAsync(String name, int tilei, int tilej, Bitmap bitmap);
+
+  /** Blocks until all the tiles passed to {@link #writeBitmapAsync} have been persisted. */
+  void awaitPendingWrites() throws IOException;
+
   /** Call after all the screenshots are done. */
   void flush();
 
@@ -44,6 +58,14 @@ public interface Album {
    */
   void writeViewHierarchyFile(String name, String data) throws IOException;
 
+  /**
+   * Same as {@link #writeViewHierarchyFile} but returns a stream to write the dump into, so that
+   * it never has to be held in memory as a whole.
+   *
+   * <p>It is the callers responsibility to call {@code close()} on the returned stream.
+   */
+  OutputStream openViewHierarchyFile(String name) throws IOException;
+
   /**
    * Opens a stream to dump the accessibility issues into. This should be called before addRecord()
    * is called for the given name.
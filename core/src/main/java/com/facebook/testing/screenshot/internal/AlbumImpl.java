@@ -16,7 +16,14 @@
 
 package com.facebook.testing.screenshot.internal;
 
+import static com.facebook.testing.screenshot.ScreenshotRunner.ARCHIVE_ARTIFACTS;
+import static com.facebook.testing.screenshot.ScreenshotRunner.DEDUPLICATE_TILES;
 import static com.facebook.testing.screenshot.ScreenshotRunner.SCREENSHOT_TESTS_RUN_ID;
+import static com.facebook.testing.screenshot.ScreenshotRunner.SKIP_UNIFORM_TILES;
+import static com.facebook.testing.screenshot.ScreenshotRunner.TILE_FORMAT;
+import static com.facebook.testing.screenshot.ScreenshotRunner.TILE_FORMAT_PNG;
+import static com.facebook.testing.screenshot.ScreenshotRunner.TILE_FORMAT_RAW;
+import static com.facebook.testing.screenshot.ScreenshotRunner.TILE_FORMAT_RAW_DEFLATE;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
@@ -31,8 +38,13 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nullable;
 
 /** A "local" implementation of Album. */
@@ -46,6 +58,21 @@ public class AlbumImpl implements Album {
   private final Set<String> mAllNames = new HashSet<>();
   private final MetadataRecorder mMetadataRecorder;
   private final ReportArtifactsManager mReportArtifactsManager;
+  private final TileWriter mTileWriter = new TileWriter();
+  /** Hashes of the pixels of every tile written, keyed by tile name. */
+  private final Map<String, String> mTileHashes = new ConcurrentHashMap<>();
+  /** Hashes of the tiles already stored when deduplicating tiles. */
+  private final Set<String> mStoredTileHashes =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  /** The tiles of a single color that weren't stored, keyed by tile name. */
+  private final Map<String, UniformTile> mUniformTiles = new ConcurrentHashMap<>();
+  /** How long encoding and writing the tiles took, keyed by the name of their record. */
+  private final ConcurrentHashMap<String, RecordTimings> mTileTimings =
+      new ConcurrentHashMap<>();
+
+  private boolean mDeduplicateTiles;
+  private boolean mSkipUniformTiles;
+  private String mTileFormat = TILE_FORMAT_PNG;
   private String mPreviousTestRunId;
   private String mCurrentTestRunId;
 
@@ -55,8 +82,17 @@ public class AlbumImpl implements Album {
     // NULLSAFE_FIXME[Field Not Nullable]
     mPreviousTestRunId = readPreviousTestRunId();
     mCurrentTestRunId = getCurrentTestRunId();
+    mDeduplicateTiles =
+        "true".equals(Registry.getRegistry().arguments.getString(DEDUPLICATE_TILES));
+    mSkipUniformTiles =
+        "true".equals(Registry.getRegistry().arguments.getString(SKIP_UNIFORM_TILES));
+    setTileFormat(Registry.getRegistry().arguments.getString(TILE_FORMAT, TILE_FORMAT_PNG));
     mMetadataRecorder = new MetadataRecorder(mDir);
-    mReportArtifactsManager = new ReportArtifactsManager(mCurrentTestRunId, mDir);
+    mReportArtifactsManager =
+        new ReportArtifactsManager(
+            mCurrentTestRunId,
+            mDir,
+            "true".equals(Registry.getRegistry().arguments.getString(ARCHIVE_ARTIFACTS)));
   }
 
   /** Creates a "local" album that stores all the images on device. */
@@ -66,6 +102,12 @@ public class AlbumImpl implements Album {
 
   @Override
   public void flush() {
+    try {
+      awaitPendingWrites();
+      mReportArtifactsManager.close();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
     mMetadataRecorder.flush();
     writePreviousTestRunId();
   }
@@ -95,13 +137,35 @@ public class AlbumImpl implements Album {
     return Registry.getRegistry().arguments.getString(SCREENSHOT_TESTS_RUN_ID, "");
   }
 
+  @VisibleForTesting
+  void setDeduplicateTiles(boolean deduplicateTiles) {
+    mDeduplicateTiles = deduplicateTiles;
+  }
+
+  @VisibleForTesting
+  void setSkipUniformTiles(boolean skipUniformTiles) {
+    mSkipUniformTiles = skipUniformTiles;
+  }
+
+  @VisibleForTesting
+  void setTileFormat(String tileFormat) {
+    if (!TILE_FORMAT_PNG.equals(tileFormat)
+        && !TILE_FORMAT_RAW.equals(tileFormat)
+        && !TILE_FORMAT_RAW_DEFLATE.equals(tileFormat)) {
+      throw new IllegalArgumentException("Unknown tile format: " + tileFormat);
+    }
+    mTileFormat = tileFormat;
+  }
+
   /** Returns the stored screenshot in the album, or null if no such test case exists. */
   @Nullable
   Bitmap getScreenshot(String name) throws IOException {
-    if (getScreenshotFile(name) == null) {
-      return null;
+    byte[] content = mReportArtifactsManager.readBytes(getScreenshotFilenameInternal(name));
+    if (content == null) {
+      content = mReportArtifactsManager.readBytes(name + RawTile.SUFFIX);
+      return content != null ? RawTile.decode(content) : null;
     }
-    return BitmapFactory.decodeFile(getScreenshotFile(name).getAbsolutePath());
+    return BitmapFactory.decodeByteArray(content, 0, content.length);
   }
 
   /**
@@ -117,13 +181,98 @@ public class AlbumImpl implements Album {
   @Override
   public String writeBitmap(String name, int tilei, int tilej, Bitmap bitmap) throws IOException {
     String tileName = generateTileName(name, tilei, tilej);
-    String filename = getScreenshotFilenameInternal(tileName);
-    ByteArrayOutputStream os = new ByteArrayOutputStream();
-    bitmap.compress(Bitmap.CompressFormat.PNG, COMPRESSION_QUALITY, os);
-    mReportArtifactsManager.recordFile(filename, os.toByteArray());
+    writeTile(getTileTimings(name), tileName, bitmap);
+    return tileName;
+  }
+
+  @Override
+  public String writeBitmapAsync(String name, int tilei, int tilej, final Bitmap bitmap) {
+    final String tileName = generateTileName(name, tilei, tilej);
+    final RecordTimings timings = getTileTimings(name);
+    mTileWriter.submit(
+        new Callable<Void>() {
+          @Override
+          public Void call() throws IOException {
+            try {
+              writeTile(timings, tileName, bitmap);
+            } finally {
+              BitmapPool.getInstance().release(bitmap);
+            }
+            return null;
+          }
+        },
+        bitmap.getByteCount());
     return tileName;
   }
 
+  @Override
+  public void awaitPendingWrites() throws IOException {
+    mTileWriter.awaitPendingWrites();
+  }
+
+  private RecordTimings getTileTimings(String name) {
+    RecordTimings timings = mTileTimings.get(name);
+    if (timings == null) {
+      timings = new RecordTimings();
+      RecordTimings previous = mTileTimings.putIfAbsent(name, timings);
+      if (previous != null) {
+        timings = previous;
+      }
+    }
+    return timings;
+  }
+
+  private void writeTile(RecordTimings timings, String tileName, Bitmap bitmap)
+      throws IOException {
+    long encodeStart = System.nanoTime();
+    TilePixels pixels = TilePixels.read(bitmap);
+    String hash = pixels.hash();
+    mTileHashes.put(tileName, hash);
+
+    if (mSkipUniformTiles && pixels.isUniform()) {
+      // Cheaper to describe than to compress, and the host can draw it back from the description
+      mUniformTiles.put(
+          tileName, new UniformTile(bitmap.getPixel(0, 0), pixels.getWidth(), pixels.getHeight()));
+      timings.addSince(RecordTimings.ENCODE, encodeStart);
+      return;
+    }
+
+    boolean raw = !TILE_FORMAT_PNG.equals(mTileFormat);
+    String filename = raw ? tileName + RawTile.SUFFIX : getScreenshotFilenameInternal(tileName);
+    if (mDeduplicateTiles) {
+      filename = raw ? hash + RawTile.SUFFIX : getScreenshotFilenameInternal(hash);
+      if (!mStoredTileHashes.add(hash) || mReportArtifactsManager.hasFile(filename)) {
+        // Identical to a tile we've already stored, possibly in a previous process
+        timings.addSince(RecordTimings.ENCODE, encodeStart);
+        return;
+      }
+    }
+
+    boolean written = false;
+    try {
+      byte[] content;
+      if (raw) {
+        // The host converts these to PNGs, with many more cores than the device
+        content = RawTile.encode(pixels, TILE_FORMAT_RAW_DEFLATE.equals(mTileFormat));
+      } else {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.PNG, COMPRESSION_QUALITY, os);
+        content = os.toByteArray();
+      }
+      timings.addSince(RecordTimings.ENCODE, encodeStart);
+
+      long writeStart = System.nanoTime();
+      mReportArtifactsManager.recordFile(filename, content);
+      timings.addSince(RecordTimings.WRITE, writeStart);
+      written = true;
+    } finally {
+      if (mDeduplicateTiles && !written) {
+        // Let the next identical tile write it, rather than refer to a file that isn't there
+        mStoredTileHashes.remove(hash);
+      }
+    }
+  }
+
   /** Delete all screenshots associated with this album */
   @Override
   public void cleanup() {
@@ -167,6 +316,11 @@ public class AlbumImpl implements Album {
     writeMetadataFile(getViewHierarchyFilename(name), data);
   }
 
+  @Override
+  public OutputStream openViewHierarchyFile(String name) throws IOException {
+    return mReportArtifactsManager.openFile(getViewHierarchyFilename(name));
+  }
+
   public void writeMetadataFile(String name, String data) throws IOException {
     byte[] out = data.getBytes();
     mReportArtifactsManager.recordFile(name, out);
@@ -179,6 +333,15 @@ public class AlbumImpl implements Album {
   @SuppressLint("SetWorldReadable")
   @Override
   public void addRecord(RecordBuilderImpl recordBuilder) throws IOException {
+    try {
+      saveRecord(recordBuilder);
+    } finally {
+      // Only this record could have claimed them, even if it failed before getting to its tiles
+      forgetTiles(recordBuilder);
+    }
+  }
+
+  private void saveRecord(RecordBuilderImpl recordBuilder) throws IOException {
     recordBuilder.checkState();
     if (mAllNames.contains(recordBuilder.getName())) {
       if (recordBuilder.hasExplicitName()) {
@@ -216,6 +379,22 @@ public class AlbumImpl implements Album {
       screenshotNode.withGroup(recordBuilder.getGroup());
     }
 
+    if (tiling.getTilePixelWidth() > 0 && tiling.getTilePixelHeight() > 0) {
+      screenshotNode.withTilePixelSize(tiling.getTilePixelWidth(), tiling.getTilePixelHeight());
+    }
+    if (recordBuilder.getImageWidth() > 0 && recordBuilder.getImageHeight() > 0) {
+      screenshotNode.withImageSize(recordBuilder.getImageWidth(), recordBuilder.getImageHeight());
+    }
+
+    RecordTimings timings = recordBuilder.getTimings();
+    RecordTimings tileTimings = mTileTimings.remove(recordBuilder.getName());
+    if (tileTimings != null) {
+      timings.addAll(tileTimings);
+    }
+    if (!timings.isEmpty()) {
+      screenshotNode.withTimings(timings.getMillis());
+    }
+
     mAllNames.add(recordBuilder.getName());
 
     screenshotNode.save();
@@ -230,13 +409,40 @@ public class AlbumImpl implements Album {
       MetadataRecorder.ScreenshotMetadataRecorder recorder, RecordBuilderImpl recordBuilder)
       throws IOException {
     Tiling tiling = recordBuilder.getTiling();
+    if (mDeduplicateTiles) {
+      recorder.withContentAddressedTiles();
+    }
     for (int i = 0; i < tiling.getWidth(); i++) {
       for (int j = 0; j < tiling.getHeight(); j++) {
-        File file = new File(mDir, generateTileName(recordBuilder.getName(), i, j));
+        String tileName = tiling.getAt(i, j);
+        String hash = mTileHashes.remove(tileName);
+        UniformTile uniformTile = mUniformTiles.remove(tileName);
+        if (uniformTile != null) {
+          recorder.withUniformTile(
+              i, j, uniformTile.mColor, uniformTile.mWidth, uniformTile.mHeight);
+        }
+        File file =
+            mDeduplicateTiles && hash != null
+                ? new File(mDir, hash)
+                : new File(mDir, generateTileName(recordBuilder.getName(), i, j));
 
         recorder
             .withAbsoluteFileName(file.getAbsolutePath())
-            .withRelativeFileName(getRelativePath(file, mDir));
+            .withRelativeFileName(getRelativePath(file, mDir))
+            .withTileHash(hash);
+      }
+    }
+  }
+
+  private void forgetTiles(RecordBuilderImpl recordBuilder) {
+    String name = recordBuilder.getName();
+    Tiling tiling = recordBuilder.getTiling();
+    mTileTimings.remove(name);
+    for (int i = 0; i < tiling.getWidth(); i++) {
+      for (int j = 0; j < tiling.getHeight(); j++) {
+        String tileName = generateTileName(name, i, j);
+        mTileHashes.remove(tileName);
+        mUniformTiles.remove(tileName);
       }
     }
   }
@@ -271,4 +477,16 @@ public class AlbumImpl implements Album {
 
     return String.format("%s_%s_%s", name, String.valueOf(i), String.valueOf(j));
   }
+
+  private static class UniformTile {
+    final int mColor;
+    final int mWidth;
+    final int mHeight;
+
+    UniformTile(int color, int width, int height) {
+      mColor = color;
+      mWidth = width;
+      mHeight = height;
+    }
+  }
 }
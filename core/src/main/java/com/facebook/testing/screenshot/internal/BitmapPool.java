@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.internal;
+
+import android.app.Instrumentation;
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Build;
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * A pool of ARGB_8888 bitmaps shared by everything that renders views, so that we don't allocate
+ * (and garbage collect) a new bitmap for every tile and every screenshot.
+ *
+ * <p>Bitmaps are bucketed by their dimensions rounded up to {@link #BUCKET_SIZE}, and reconfigured
+ * to the exact size requested when they're handed out. The pool holds at most a fraction of the
+ * heap and is emptied when the system reports memory pressure.
+ *
+ * <p>Only bitmaps that are released back are worth taking from here, so the bitmaps handed out to
+ * callers, e.g. by {@link ScreenshotImpl#getBitmap}, are allocated directly instead.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+class BitmapPool implements ComponentCallbacks2 {
+  private static final int BUCKET_SIZE = 64;
+  private static final int MAX_HEAP_FRACTION = 8;
+
+  @Nullable private static BitmapPool sInstance;
+
+  /** Pooled bitmaps, least recently released first. */
+  private final List<Bitmap> mFree = new ArrayList<>();
+
+  private final long mMaxBytes;
+  private long mFreeBytes;
+
+  BitmapPool(long maxBytes) {
+    mMaxBytes = maxBytes;
+  }
+
+  /** Get the pool shared by all the screenshots in this process. */
+  static synchronized BitmapPool getInstance() {
+    if (sInstance == null) {
+      sInstance = new BitmapPool(Runtime.getRuntime().maxMemory() / MAX_HEAP_FRACTION);
+
+      Instrumentation instrumentation = Registry.getRegistry().instrumentation;
+      if (instrumentation != null) {
+        instrumentation
+            .getTargetContext()
+            .getApplicationContext()
+            .registerComponentCallbacks(sInstance);
+      }
+    }
+    return sInstance;
+  }
+
+  /**
+   * Returns a mutable, fully transparent bitmap of exactly the given size. Pass it back to {@link
+   * #release} once it's no longer needed.
+   */
+  Bitmap acquire(int width, int height) {
+    long key = keyFor(width, height);
+    synchronized (this) {
+      for (int i = mFree.size() - 1; i >= 0; i--) {
+        Bitmap candidate = mFree.get(i);
+        if (keyOf(candidate) == key) {
+          mFree.remove(i);
+          mFreeBytes -= sizeOf(candidate);
+          return prepare(candidate, width, height);
+        }
+      }
+    }
+
+    if (!canReconfigure()) {
+      return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+    Bitmap bitmap = Bitmap.createBitmap(bucket(width), bucket(height), Bitmap.Config.ARGB_8888);
+    bitmap.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+    return bitmap;
+  }
+
+  /** Returns a bitmap to the pool. The caller must not use it afterwards. */
+  void release(@Nullable Bitmap bitmap) {
+    if (bitmap == null
+        || bitmap.isRecycled()
+        || !bitmap.isMutable()
+        || bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+      return;
+    }
+
+    long size = sizeOf(bitmap);
+    if (size > mMaxBytes) {
+      bitmap.recycle();
+      return;
+    }
+
+    synchronized (this) {
+      while (!mFree.isEmpty() && mFreeBytes + size > mMaxBytes) {
+        Bitmap evicted = mFree.remove(0);
+        mFreeBytes -= sizeOf(evicted);
+        evicted.recycle();
+      }
+      mFree.add(bitmap);
+      mFreeBytes += size;
+    }
+  }
+
+  /** Recycles every pooled bitmap. */
+  synchronized void clear() {
+    for (Bitmap bitmap : mFree) {
+      bitmap.recycle();
+    }
+    mFree.clear();
+    mFreeBytes = 0;
+  }
+
+  @Override
+  public void onTrimMemory(int level) {
+    if (level >= TRIM_MEMORY_RUNNING_LOW) {
+      clear();
+    }
+  }
+
+  @Override
+  public void onLowMemory() {
+    clear();
+  }
+
+  @Override
+  public void onConfigurationChanged(Configuration newConfig) {}
+
+  private static Bitmap prepare(Bitmap bitmap, int width, int height) {
+    if (bitmap.getWidth() != width || bitmap.getHeight() != height) {
+      bitmap.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+    }
+    bitmap.eraseColor(Color.TRANSPARENT);
+    return bitmap;
+  }
+
+  /**
+   * Bitmaps can only be resized in place from KitKat, before that every size is its own bucket.
+   */
+  private static boolean canReconfigure() {
+    return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+  }
+
+  private static int bucket(int dimension) {
+    return (dimension + BUCKET_SIZE - 1) / BUCKET_SIZE * BUCKET_SIZE;
+  }
+
+  private static long keyFor(int width, int height) {
+    if (!canReconfigure()) {
+      return ((long) width << 32) | height;
+    }
+    return (long) bucket(width) * bucket(height) * 4;
+  }
+
+  private static long keyOf(Bitmap bitmap) {
+    if (!canReconfigure()) {
+      return ((long) bitmap.getWidth() << 32) | bitmap.getHeight();
+    }
+    return bitmap.getAllocationByteCount();
+  }
+
+  private static long sizeOf(Bitmap bitmap) {
+    if (!canReconfigure()) {
+      return bitmap.getByteCount();
+    }
+    return bitmap.getAllocationByteCount();
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.internal;
+
+import com.facebook.infer.annotation.Nullsafe;
+import javax.annotation.Nullable;
+
+/**
+ * The test that is currently running, as published by {@link
+ * com.facebook.testing.screenshot.ScreenshotTestListener}. This is much cheaper than walking the
+ * stack to find it, and works from any thread.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class CurrentTestRegistry {
+  @Nullable private static volatile CurrentTest sCurrentTest;
+
+  private CurrentTestRegistry() {}
+
+  /**
+   * Publishes the test that just started. A parameterized test method name like {@code
+   * testFoo[1]} is published as {@code testFoo}.
+   */
+  public static void setCurrentTest(String testClass, String testName) {
+    int parameters = testName.indexOf('[');
+    if (parameters > 0) {
+      testName = testName.substring(0, parameters);
+    }
+    sCurrentTest = new CurrentTest(testClass, testName);
+  }
+
+  public static void clear() {
+    sCurrentTest = null;
+  }
+
+  /** The test that is currently running, or null if none was published. */
+  @Nullable
+  static CurrentTest getCurrentTest() {
+    return sCurrentTest;
+  }
+
+  /** A test class and method name, published together so they're always consistent. */
+  static class CurrentTest {
+    final String mTestClass;
+    final String mTestName;
+
+    CurrentTest(String testClass, String testName) {
+      mTestClass = testClass;
+      mTestName = testName;
+    }
+  }
+}
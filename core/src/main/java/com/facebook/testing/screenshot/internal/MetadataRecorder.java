@@ -18,23 +18,48 @@ package com.facebook.testing.screenshot.internal;
 
 import com.facebook.infer.annotation.Nullsafe;
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-import com.google.gson.stream.JsonReader;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import javax.annotation.Nullable;
 
+/**
+ * Records the metadata of every screenshot.
+ *
+ * <p>Each screenshot is appended to a journal, {@code metadata.jsonl}, as a single line of JSON as
+ * soon as it's saved, so nothing is kept in memory and a crashed run still leaves the metadata of
+ * the screenshots taken so far behind. {@link #flush()} compacts the journal into the JSON array in
+ * {@code metadata.json}. The journal is kept around so that processes started later in the same
+ * test run (e.g. with the orchestrator) can simply append to it, and they only add their own
+ * entries to {@code metadata.json}.
+ *
+ * <p>The journal is the source of truth: the tooling reads it whenever it's there, since {@code
+ * metadata.json} misses the entries of a process that crashed after an earlier one flushed.
+ */
 @Nullsafe(Nullsafe.Mode.LOCAL)
 class MetadataRecorder {
+  private static final String UTF_8 = "UTF-8";
 
   private final File mDir;
-  @Nullable private List<ScreenshotMetadata> mMetadata;
+  private final Gson mGson = new Gson();
+  @Nullable private FileOutputStream mJournal;
+  /** Where this process's entries start in the journal, or -1 if it hasn't added any yet. */
+  private long mJournalStart = -1;
 
   MetadataRecorder(File reportDirectory) {
     mDir = reportDirectory;
@@ -42,6 +67,7 @@ class MetadataRecorder {
 
   void flush() {
     try {
+      closeJournal();
       writeMetadata();
     } catch (IOException e) {
       throw new RuntimeException(e);
@@ -55,13 +81,14 @@ class MetadataRecorder {
   class ScreenshotMetadataRecorder {
 
     private final ScreenshotMetadata mCurrentScreenshotMetadata = new ScreenshotMetadata();
+    private boolean mSaved;
 
     void save() throws IOException {
-      List<ScreenshotMetadata> allScreenshotsMetadata = getOrReadMetadata();
-      if (allScreenshotsMetadata.contains(mCurrentScreenshotMetadata)) {
+      if (mSaved) {
         throw new IllegalStateException("metadata was already saved");
       }
-      allScreenshotsMetadata.add(mCurrentScreenshotMetadata);
+      appendToJournal(mGson.toJson(mCurrentScreenshotMetadata));
+      mSaved = true;
     }
 
     public ScreenshotMetadataRecorder withDescription(String description) {
@@ -94,6 +121,20 @@ class MetadataRecorder {
       return this;
     }
 
+    /** The size in pixels of every tile but the ones on the right and bottom edges. */
+    public ScreenshotMetadataRecorder withTilePixelSize(int width, int height) {
+      mCurrentScreenshotMetadata.tilePixelWidth = width;
+      mCurrentScreenshotMetadata.tilePixelHeight = height;
+      return this;
+    }
+
+    /** The size in pixels of the whole screenshot, once its tiles are stitched together. */
+    public ScreenshotMetadataRecorder withImageSize(int width, int height) {
+      mCurrentScreenshotMetadata.imageWidth = width;
+      mCurrentScreenshotMetadata.imageHeight = height;
+      return this;
+    }
+
     public ScreenshotMetadataRecorder withViewHierarchy(String viewHierarchyFilename) {
       mCurrentScreenshotMetadata.viewHierarchy = viewHierarchyFilename;
       return this;
@@ -109,6 +150,11 @@ class MetadataRecorder {
       return this;
     }
 
+    public ScreenshotMetadataRecorder withTimings(Map<String, Double> timings) {
+      mCurrentScreenshotMetadata.timings = new LinkedHashMap<>(timings);
+      return this;
+    }
+
     public ScreenshotMetadataRecorder withError(String error) {
       mCurrentScreenshotMetadata.error = error;
       return this;
@@ -134,37 +180,164 @@ class MetadataRecorder {
       mCurrentScreenshotMetadata.relativeFileNames.add(relativePath);
       return this;
     }
+
+    /**
+     * Marks the tiles of this screenshot as stored by content, i.e. the file of each tile is named
+     * after its hash in {@code tileHashes} rather than after the screenshot.
+     */
+    public ScreenshotMetadataRecorder withContentAddressedTiles() {
+      mCurrentScreenshotMetadata.contentAddressed = true;
+      return this;
+    }
+
+    /**
+     * Records the hash of the raw pixels of the next tile, in the same order as the file names.
+     * This lets tooling tell which tiles changed without decoding them.
+     */
+    public ScreenshotMetadataRecorder withTileHash(@Nullable String hash) {
+      if (mCurrentScreenshotMetadata.tileHashes == null) {
+        mCurrentScreenshotMetadata.tileHashes = new ArrayList<>();
+      }
+      mCurrentScreenshotMetadata.tileHashes.add(hash);
+      return this;
+    }
+
+    /**
+     * Records that tile {@code (x, y)} is entirely of the given ARGB color, in which case it has no
+     * file even though it still has a file name.
+     */
+    public ScreenshotMetadataRecorder withUniformTile(
+        int x, int y, int color, int width, int height) {
+      if (mCurrentScreenshotMetadata.uniformTiles == null) {
+        mCurrentScreenshotMetadata.uniformTiles = new ArrayList<>();
+      }
+      mCurrentScreenshotMetadata.uniformTiles.add(
+          new UniformTileMetadata(x, y, String.format(Locale.US, "#%08x", color), width, height));
+      return this;
+    }
   }
 
   File getMetadataFile() {
     return new File(mDir, "metadata.json");
   }
 
-  private List<ScreenshotMetadata> getOrReadMetadata() throws IOException {
-    if (mMetadata == null) {
+  File getJournalFile() {
+    return new File(mDir, "metadata.jsonl");
+  }
+
+  private synchronized void appendToJournal(String json) throws IOException {
+    if (mJournal == null) {
+      File journalFile = getJournalFile();
+      boolean needsNewline = endsWithPartialLine(journalFile);
+      long journalLength = journalFile.length();
+      mJournal = new FileOutputStream(journalFile, true);
+      if (needsNewline) {
+        // A previous process died while writing its last entry, don't append to it
+        mJournal.write('\n');
+        journalLength++;
+      }
+      if (mJournalStart < 0) {
+        mJournalStart = journalLength;
+      }
+    }
+    // A single write per entry, so that an entry is either fully there or cut short at the end
+    mJournal.write((json + "\n").getBytes(UTF_8));
+  }
 
-      File metadataFile = getMetadataFile();
-      if (metadataFile.exists()) {
-        Gson gson = new Gson();
-        JsonReader jsonReader = new JsonReader(new FileReader(getMetadataFile()));
-        mMetadata =
-            gson.fromJson(jsonReader, new TypeToken<List<ScreenshotMetadata>>() {}.getType());
-        if (mMetadata == null) {
-          mMetadata = new ArrayList<>();
+  private synchronized void closeJournal() throws IOException {
+    if (mJournal != null) {
+      mJournal.close();
+      mJournal = null;
+    }
+  }
+
+  private static boolean endsWithPartialLine(File file) throws IOException {
+    if (file.length() == 0) {
+      return false;
+    }
+    try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+      in.seek(file.length() - 1);
+      return in.read() != '\n';
+    }
+  }
+
+  /**
+   * Streams the entries of the journal into metadata.json. Entries are copied verbatim, skipping
+   * any that were cut short.
+   *
+   * <p>Only the first flush of a test run copies the whole journal. Later ones, e.g. from other
+   * processes with the orchestrator, append the entries they added to the existing array, so that
+   * compacting doesn't get slower as the run goes on.
+   */
+  private synchronized void writeMetadata() throws IOException {
+    File journalFile = getJournalFile();
+    if (!journalFile.exists()) {
+      return;
+    }
+
+    File metadataFile = getMetadataFile();
+    byte[] tail = readTail(metadataFile, 2);
+    if (tail.length < 2 || tail[1] != ']') {
+      // Nothing compacted yet, or a previous flush didn't finish
+      try (Writer metadata = openMetadata(metadataFile, false)) {
+        metadata.write('[');
+        copyJournal(journalFile, 0, metadata, true);
+      }
+    } else if (mJournalStart >= 0) {
+      try (RandomAccessFile metadata = new RandomAccessFile(metadataFile, "rw")) {
+        metadata.setLength(metadata.length() - 1);
+      }
+      try (Writer metadata = openMetadata(metadataFile, true)) {
+        copyJournal(journalFile, mJournalStart, metadata, tail[0] == '[');
+      }
+    }
+    mJournalStart = -1;
+  }
+
+  /** Copies the entries of the journal from the given offset, and closes the JSON array. */
+  private static void copyJournal(File journalFile, long offset, Writer metadata, boolean first)
+      throws IOException {
+    try (FileInputStream in = new FileInputStream(journalFile)) {
+      in.getChannel().position(offset);
+      BufferedReader journal = new BufferedReader(new InputStreamReader(in, UTF_8));
+      String line;
+      while ((line = journal.readLine()) != null) {
+        if (!isJsonObject(line)) {
+          continue;
+        }
+        if (!first) {
+          metadata.write(',');
         }
-      } else {
-        mMetadata = new ArrayList<>();
+        metadata.write(line);
+        first = false;
       }
     }
-    return mMetadata;
+    metadata.write(']');
+  }
+
+  private static boolean isJsonObject(String line) {
+    try {
+      return JsonParser.parseString(line).isJsonObject();
+    } catch (JsonParseException e) {
+      // Cut short by a crash
+      return false;
+    }
   }
 
-  private void writeMetadata() throws IOException {
-    if (mMetadata != null) {
-      Gson gson = new Gson();
-      FileWriter jsonWriter = new FileWriter(getMetadataFile());
-      gson.toJson(mMetadata, jsonWriter);
-      jsonWriter.close();
+  private static Writer openMetadata(File metadataFile, boolean append) throws IOException {
+    return new BufferedWriter(
+        new OutputStreamWriter(new FileOutputStream(metadataFile, append), UTF_8));
+  }
+
+  private static byte[] readTail(File file, int count) throws IOException {
+    if (!file.exists()) {
+      return new byte[0];
+    }
+    try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+      byte[] tail = new byte[(int) Math.min(count, in.length())];
+      in.seek(in.length() - tail.length);
+      in.readFully(tail);
+      return tail;
     }
   }
 
@@ -180,6 +353,14 @@ class MetadataRecorder {
     int tileWidth;
     int tileHeight;
     // NULLSAFE_FIXME[Field Not Initialized]
+    Integer tilePixelWidth;
+    // NULLSAFE_FIXME[Field Not Initialized]
+    Integer tilePixelHeight;
+    // NULLSAFE_FIXME[Field Not Initialized]
+    Integer imageWidth;
+    // NULLSAFE_FIXME[Field Not Initialized]
+    Integer imageHeight;
+    // NULLSAFE_FIXME[Field Not Initialized]
     String viewHierarchy;
     // NULLSAFE_FIXME[Field Not Initialized]
     String axIssues;
@@ -192,6 +373,33 @@ class MetadataRecorder {
     // NULLSAFE_FIXME[Field Not Initialized]
     List<String> relativeFileNames;
     // NULLSAFE_FIXME[Field Not Initialized]
+    List<String> tileHashes;
+    // NULLSAFE_FIXME[Field Not Initialized]
+    Boolean contentAddressed;
+    // NULLSAFE_FIXME[Field Not Initialized]
+    List<UniformTileMetadata> uniformTiles;
+    // NULLSAFE_FIXME[Field Not Initialized]
     Map<String, String> extras;
+    /** Milliseconds spent in each phase of the record, see {@link RecordTimings}. */
+    // NULLSAFE_FIXME[Field Not Initialized]
+    Map<String, Double> timings;
+  }
+
+  private static class UniformTileMetadata {
+    final int x;
+    final int y;
+    /** The color of every pixel of the tile, as {@code #aarrggbb}. */
+    final String color;
+
+    final int width;
+    final int height;
+
+    UniformTileMetadata(int x, int y, String color, int width, int height) {
+      this.x = x;
+      this.y = y;
+      this.color = color;
+      this.width = width;
+      this.height = height;
+    }
   }
 }
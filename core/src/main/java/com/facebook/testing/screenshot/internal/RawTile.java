@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.internal;
+
+import android.graphics.Bitmap;
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import javax.annotation.Nullable;
+
+/**
+ * A trivial tile format that stores the pixels as they are in memory, so that the costly PNG
+ * encoding can be done on the host instead, see {@code raw_tiles.py}.
+ *
+ * <p>A file is a 16 byte header followed by the RGBA bytes of the tile, row by row, optionally
+ * deflated. The header is made of the {@code SSRT} magic, a version byte, a compression byte (0 for
+ * none, 1 for deflate), a flags byte (bit 0 set when the colors are premultiplied by alpha), a
+ * reserved byte, and the width and height as big endian 32 bit integers.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+class RawTile {
+  static final String SUFFIX = ".rgba";
+
+  private static final byte[] MAGIC = {'S', 'S', 'R', 'T'};
+  private static final int HEADER_SIZE = 16;
+  private static final int VERSION = 1;
+  private static final int COMPRESSION_NONE = 0;
+  private static final int COMPRESSION_DEFLATE = 1;
+  private static final int FLAG_PREMULTIPLIED = 1;
+
+  private RawTile() {}
+
+  /** Encodes the pixels, compressing them with the fastest deflate level if asked to. */
+  static byte[] encode(TilePixels pixels, boolean compress) throws IOException {
+    int size = pixels.getWidth() * pixels.getHeight();
+    ByteBuffer bytes = ByteBuffer.allocate(size * 4).order(ByteOrder.nativeOrder());
+    // Native order gives back the bytes exactly as the bitmap holds them, i.e. R, G, B, A
+    bytes.asIntBuffer().put(pixels.getPixels(), 0, size);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream(HEADER_SIZE + (compress ? 0 : size * 4));
+    DataOutputStream header = new DataOutputStream(out);
+    header.write(MAGIC);
+    header.writeByte(VERSION);
+    header.writeByte(compress ? COMPRESSION_DEFLATE : COMPRESSION_NONE);
+    header.writeByte(FLAG_PREMULTIPLIED);
+    header.writeByte(0);
+    header.writeInt(pixels.getWidth());
+    header.writeInt(pixels.getHeight());
+    header.flush();
+
+    if (!compress) {
+      out.write(bytes.array(), 0, size * 4);
+      return out.toByteArray();
+    }
+
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      OutputStream deflated = new DeflaterOutputStream(out, deflater);
+      deflated.write(bytes.array(), 0, size * 4);
+      deflated.close();
+    } finally {
+      deflater.end();
+    }
+    return out.toByteArray();
+  }
+
+  /** Decodes a tile written by {@link #encode}, or returns null if it's not a raw tile. */
+  @Nullable
+  static Bitmap decode(byte[] content) throws IOException {
+    if (content.length < HEADER_SIZE) {
+      return null;
+    }
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (content[i] != MAGIC[i]) {
+        return null;
+      }
+    }
+
+    ByteBuffer header = ByteBuffer.wrap(content).order(ByteOrder.BIG_ENDIAN);
+    int compression = content[5];
+    int width = header.getInt(8);
+    int height = header.getInt(12);
+    byte[] pixels = new byte[width * height * 4];
+    if (compression == COMPRESSION_DEFLATE) {
+      Inflater inflater = new Inflater();
+      try {
+        inflater.setInput(content, HEADER_SIZE, content.length - HEADER_SIZE);
+        int read = 0;
+        while (read < pixels.length && !inflater.finished()) {
+          int count = inflater.inflate(pixels, read, pixels.length - read);
+          if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+            throw new IOException("Truncated raw tile");
+          }
+          read += count;
+        }
+      } catch (DataFormatException e) {
+        throw new IOException(e);
+      } finally {
+        inflater.end();
+      }
+    } else {
+      System.arraycopy(content, HEADER_SIZE, pixels, 0, pixels.length);
+    }
+
+    Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    bitmap.copyPixelsFromBuffer(ByteBuffer.wrap(pixels));
+    return bitmap;
+  }
+}
@@ -25,6 +25,7 @@ import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 /**
  * A builder for all the metadata associated with a screenshot.
@@ -54,6 +55,10 @@ public class RecordBuilderImpl implements RecordBuilder {
   // NULLSAFE_FIXME[Field Not Initialized]
   private View mView;
   private long mMaxPixels = DEFAULT_MAX_PIXELS;
+  private boolean mStreamingCapture;
+  private int mImageWidth;
+  private int mImageHeight;
+  private final RecordTimings mTimings = new RecordTimings();
 
   /* package */ RecordBuilderImpl(ScreenshotImpl screenshotImpl) {
     mScreenshotImpl = screenshotImpl;
@@ -149,6 +154,19 @@ public class RecordBuilderImpl implements RecordBuilder {
     return mMaxPixels;
   }
 
+  /**
+   * @inherit
+   */
+  @Override
+  public RecordBuilderImpl setStreamingCapture(boolean streamingCapture) {
+    mStreamingCapture = streamingCapture;
+    return this;
+  }
+
+  public boolean getStreamingCapture() {
+    return mStreamingCapture;
+  }
+
   /**
    * Returns true if this record has been given an explicit name using setName(). If false,
    * getName() will still generate a name.
@@ -176,6 +194,13 @@ public class RecordBuilderImpl implements RecordBuilder {
     checkState();
   }
 
+  @Override
+  public Future<Void> recordAsync() {
+    Future<Void> future = mScreenshotImpl.recordAsync(this);
+    checkState();
+    return future;
+  }
+
   /** Sanity checks that the record is ready to be persisted */
   void checkState() {
     if (mError != null) {
@@ -208,6 +233,26 @@ public class RecordBuilderImpl implements RecordBuilder {
     return this;
   }
 
+  /** The size in pixels of the whole screenshot, or 0 if it hasn't been captured. */
+  public int getImageWidth() {
+    return mImageWidth;
+  }
+
+  public int getImageHeight() {
+    return mImageHeight;
+  }
+
+  RecordBuilderImpl setImageSize(int width, int height) {
+    mImageWidth = width;
+    mImageHeight = height;
+    return this;
+  }
+
+  /** How long each phase of recording this screenshot took. */
+  RecordTimings getTimings() {
+    return mTimings;
+  }
+
   @Override
   public RecordBuilderImpl addExtra(String key, String value) {
     mExtras.put(key, value);
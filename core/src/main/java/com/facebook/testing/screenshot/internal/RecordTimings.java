@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.internal;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * How long each phase of recording a screenshot took, summed over all its tiles. Phases may run on
+ * different threads, and tiles are encoded concurrently, so the phases can add up to more than the
+ * wall time of the record.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+class RecordTimings {
+  /** Attaching the view to a fake window and detaching it afterwards. */
+  static final String ATTACH = "attach";
+  /** Drawing the view into the tiles. */
+  static final String DRAW = "draw";
+  /** Hashing and compressing the tiles. */
+  static final String ENCODE = "encode";
+  /** Writing the tiles to storage. */
+  static final String WRITE = "write";
+  /** Walking the view hierarchy and writing the dump. */
+  static final String HIERARCHY = "hierarchy";
+  /** Waiting for the accessibility rules and writing the issues. */
+  static final String ACCESSIBILITY = "accessibility";
+  /**
+   * Waiting for the background work to get to the record, and for the tiles to be written. This
+   * depends on the other records being written at the same time, so it's not part of the total.
+   */
+  static final String WAIT = "wait";
+  /** The sum of every other phase, i.e. the work done for this record alone. */
+  static final String TOTAL = "total";
+
+  private final Map<String, Long> mNanos = new LinkedHashMap<>();
+
+  synchronized void add(String phase, long nanos) {
+    Long previous = mNanos.get(phase);
+    mNanos.put(phase, previous == null ? nanos : previous + nanos);
+  }
+
+  /** Adds the time since {@code startNanos}, as given by {@link System#nanoTime()}. */
+  void addSince(String phase, long startNanos) {
+    add(phase, System.nanoTime() - startNanos);
+  }
+
+  void addAll(RecordTimings other) {
+    for (Map.Entry<String, Long> entry : other.getNanos().entrySet()) {
+      add(entry.getKey(), entry.getValue());
+    }
+  }
+
+  synchronized boolean isEmpty() {
+    return mNanos.isEmpty();
+  }
+
+  synchronized Map<String, Long> getNanos() {
+    return new LinkedHashMap<>(mNanos);
+  }
+
+  /**
+   * The duration of each phase in milliseconds, rounded to the microsecond, followed by the {@link
+   * #TOTAL}.
+   */
+  synchronized Map<String, Double> getMillis() {
+    Map<String, Double> millis = new LinkedHashMap<>();
+    long total = 0;
+    for (Map.Entry<String, Long> entry : mNanos.entrySet()) {
+      millis.put(entry.getKey(), toMillis(entry.getValue()));
+      if (!WAIT.equals(entry.getKey())) {
+        total += entry.getValue();
+      }
+    }
+    millis.put(TOTAL, toMillis(total));
+    return millis;
+  }
+
+  private static double toMillis(long nanos) {
+    return Math.round(nanos / 1000.0) / 1000.0;
+  }
+}
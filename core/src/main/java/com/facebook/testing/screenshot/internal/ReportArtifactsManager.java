@@ -17,24 +17,69 @@
 package com.facebook.testing.screenshot.internal;
 
 import com.facebook.infer.annotation.Nullsafe;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
 import javax.annotation.Nullable;
 
+/**
+ * Stores the artifacts (tiles, view hierarchies, accessibility issues) of the current test run.
+ *
+ * <p>By default every artifact is its own file in the test run directory. In archive mode they are
+ * instead appended to a few tar files named {@code artifacts_<n>.tar}, which is much cheaper on
+ * emulated storage where creating a file is expensive. Each process starts a new archive, and an
+ * archive is rolled over once it grows past {@link #MAX_ARCHIVE_BYTES}. No end-of-archive marker
+ * is written, so an archive stays readable even if the process dies half way through a run.
+ *
+ * <p>Appending to an archive is serialized, so that entries don't interleave. Artifacts are only
+ * appended once they're fully encoded though, so the tile writer threads still encode in parallel
+ * and only wait on each other to copy bytes into the archive.
+ */
 @Nullsafe(Nullsafe.Mode.LOCAL)
 class ReportArtifactsManager {
+  static final String ARCHIVE_PREFIX = "artifacts_";
+  static final String ARCHIVE_SUFFIX = ".tar";
+
+  private static final long MAX_ARCHIVE_BYTES = 64L * 1024 * 1024;
+  private static final int BLOCK_SIZE = 512;
+  private static final int NAME_LENGTH = 100;
+  private static final String LONG_NAME_ENTRY = "././@LongLink";
 
   private final String mTestRunId;
   private final File mRootDir;
+  private final boolean mArchive;
   @Nullable private File mCurrentTestRunReportsDirectory;
 
+  /** Where each archived artifact is stored, keyed by file name. */
+  @Nullable private Map<String, ArchiveEntry> mArchiveIndex;
+
+  @Nullable private FileOutputStream mArchiveStream;
+  private int mArchiveNumber;
+  private long mArchiveLength;
+
   public ReportArtifactsManager(String testRunId, File rootDir) {
+    this(testRunId, rootDir, false);
+  }
+
+  public ReportArtifactsManager(String testRunId, File rootDir, boolean archive) {
     mTestRunId = testRunId;
     mRootDir = rootDir;
+    mArchive = archive;
   }
 
   public void recordFile(String fileName, byte[] content) throws IOException {
+    if (mArchive) {
+      appendToArchive(fileName, content);
+      return;
+    }
+
     File reportsDirectory = getOrCreateCurrentTestRunReportsDirectory();
     try (FileOutputStream recordedFile =
         new FileOutputStream(new File(reportsDirectory, fileName))) {
@@ -42,6 +87,33 @@ class ReportArtifactsManager {
     }
   }
 
+  /**
+   * Opens a stream to record the file with the given name into. In archive mode the content is
+   * only appended to the archive once the stream is closed.
+   */
+  public OutputStream openFile(final String fileName) throws IOException {
+    if (!mArchive) {
+      return new BufferedOutputStream(
+          new FileOutputStream(new File(getOrCreateCurrentTestRunReportsDirectory(), fileName)));
+    }
+
+    return new ByteArrayOutputStream() {
+      private boolean mClosed;
+
+      @Override
+      public void close() throws IOException {
+        if (!mClosed) {
+          mClosed = true;
+          appendToArchive(fileName, toByteArray());
+        }
+      }
+    };
+  }
+
+  /**
+   * Returns the file with the given name, or null if it doesn't exist. Archived artifacts have no
+   * file of their own, use {@link #readBytes} to read those.
+   */
   @Nullable
   public File readFile(String fileName) {
     File requestedFile = new File(getOrCreateCurrentTestRunReportsDirectory(), fileName);
@@ -52,7 +124,55 @@ class ReportArtifactsManager {
     }
   }
 
-  private File getOrCreateCurrentTestRunReportsDirectory() {
+  /** Whether an artifact with the given name was recorded in this test run. */
+  public boolean hasFile(String fileName) throws IOException {
+    if (mArchive) {
+      synchronized (this) {
+        return getArchiveIndex().containsKey(fileName);
+      }
+    }
+    return readFile(fileName) != null;
+  }
+
+  /** Returns the contents of the given artifact, or null if it doesn't exist. */
+  @Nullable
+  public byte[] readBytes(String fileName) throws IOException {
+    if (!mArchive) {
+      File file = readFile(fileName);
+      if (file == null) {
+        return null;
+      }
+      try (FileInputStream in = new FileInputStream(file)) {
+        byte[] content = new byte[(int) file.length()];
+        readFully(in, content);
+        return content;
+      }
+    }
+
+    ArchiveEntry entry;
+    synchronized (this) {
+      entry = getArchiveIndex().get(fileName);
+    }
+    if (entry == null) {
+      return null;
+    }
+    try (RandomAccessFile archive = new RandomAccessFile(entry.mArchive, "r")) {
+      byte[] content = new byte[(int) entry.mLength];
+      archive.seek(entry.mOffset);
+      archive.readFully(content);
+      return content;
+    }
+  }
+
+  /** Closes the current archive, if any. Recording more files afterwards reopens it. */
+  public synchronized void close() throws IOException {
+    if (mArchiveStream != null) {
+      mArchiveStream.close();
+      mArchiveStream = null;
+    }
+  }
+
+  private synchronized File getOrCreateCurrentTestRunReportsDirectory() {
     if (mCurrentTestRunReportsDirectory == null) {
       mCurrentTestRunReportsDirectory = new File(mRootDir, mTestRunId);
       if (!mCurrentTestRunReportsDirectory.mkdir()
@@ -62,4 +182,207 @@ class ReportArtifactsManager {
     }
     return mCurrentTestRunReportsDirectory;
   }
+
+  private synchronized void appendToArchive(String fileName, byte[] content) throws IOException {
+    Map<String, ArchiveEntry> index = getArchiveIndex();
+    byte[] nameBytes = fileName.getBytes("UTF-8");
+    long entryLength = BLOCK_SIZE + padded(content.length);
+    if (nameBytes.length > NAME_LENGTH) {
+      entryLength += BLOCK_SIZE + padded(nameBytes.length + 1);
+    }
+
+    if (mArchiveLength > 0 && mArchiveLength + entryLength > MAX_ARCHIVE_BYTES) {
+      close();
+      mArchiveNumber++;
+      mArchiveLength = 0;
+    }
+    if (mArchiveStream == null) {
+      mArchiveStream = new FileOutputStream(getArchiveFile(mArchiveNumber), true);
+    }
+
+    FileOutputStream out = mArchiveStream;
+    try {
+      if (nameBytes.length > NAME_LENGTH) {
+        // GNU extension: the real name is stored as the content of a preceding entry
+        byte[] longName = new byte[nameBytes.length + 1];
+        System.arraycopy(nameBytes, 0, longName, 0, nameBytes.length);
+        writeEntry(out, LONG_NAME_ENTRY, 'L', longName);
+      }
+      writeEntry(out, fileName, '0', content);
+    } catch (IOException e) {
+      // Part of the entry may have been written, so mArchiveLength no longer matches the end of
+      // the archive. Leave it truncated, which readers skip, and carry on in a new one.
+      mArchiveStream = null;
+      try {
+        out.close();
+      } catch (IOException ignored) {
+        // Already failing
+      }
+      mArchiveNumber++;
+      mArchiveLength = 0;
+      throw e;
+    }
+    long offset = mArchiveLength + entryLength - padded(content.length);
+    mArchiveLength += entryLength;
+
+    index.put(fileName, new ArchiveEntry(getArchiveFile(mArchiveNumber), offset, content.length));
+  }
+
+  /**
+   * Lazily builds the index of archived artifacts, including the ones recorded by previous
+   * processes of this test run, and picks the archive this process will append to.
+   */
+  private Map<String, ArchiveEntry> getArchiveIndex() throws IOException {
+    if (mArchiveIndex != null) {
+      return mArchiveIndex;
+    }
+
+    Map<String, ArchiveEntry> index = new HashMap<>();
+    int number = 0;
+    while (getArchiveFile(number).exists()) {
+      readArchiveIndex(getArchiveFile(number), index);
+      number++;
+    }
+    mArchiveNumber = number;
+    mArchiveLength = 0;
+    mArchiveIndex = index;
+    return index;
+  }
+
+  private File getArchiveFile(int number) {
+    return new File(
+        getOrCreateCurrentTestRunReportsDirectory(), ARCHIVE_PREFIX + number + ARCHIVE_SUFFIX);
+  }
+
+  private static void readArchiveIndex(File archiveFile, Map<String, ArchiveEntry> index)
+      throws IOException {
+    try (RandomAccessFile archive = new RandomAccessFile(archiveFile, "r")) {
+      byte[] header = new byte[BLOCK_SIZE];
+      long length = archive.length();
+      long position = 0;
+      String longName = null;
+      while (position + BLOCK_SIZE <= length) {
+        archive.seek(position);
+        archive.readFully(header);
+        if (header[0] == 0) {
+          break;
+        }
+
+        long size = parseOctal(header, 124, 12);
+        long dataOffset = position + BLOCK_SIZE;
+        if (dataOffset + size > length) {
+          // Truncated entry, the process died while writing it
+          break;
+        }
+
+        if (header[156] == 'L') {
+          byte[] name = new byte[(int) size];
+          archive.readFully(name);
+          longName = parseString(name, 0, name.length);
+        } else {
+          String name = longName != null ? longName : parseString(header, 0, NAME_LENGTH);
+          index.put(name, new ArchiveEntry(archiveFile, dataOffset, size));
+          longName = null;
+        }
+        position = dataOffset + padded(size);
+      }
+    }
+  }
+
+  private static void writeEntry(FileOutputStream out, String name, char type, byte[] content)
+      throws IOException {
+    byte[] header = new byte[BLOCK_SIZE];
+    byte[] nameBytes = name.getBytes("UTF-8");
+    System.arraycopy(nameBytes, 0, header, 0, Math.min(nameBytes.length, NAME_LENGTH));
+    putOctal(header, 100, 8, 0644);
+    putOctal(header, 108, 8, 0);
+    putOctal(header, 116, 8, 0);
+    putOctal(header, 124, 12, content.length);
+    putOctal(header, 136, 12, System.currentTimeMillis() / 1000);
+    header[156] = (byte) type;
+    putString(header, 257, "ustar");
+    putString(header, 263, "00");
+
+    // The checksum is computed with the checksum field itself filled with spaces
+    for (int i = 148; i < 156; i++) {
+      header[i] = ' ';
+    }
+    long checksum = 0;
+    for (byte b : header) {
+      checksum += b & 0xff;
+    }
+    putOctal(header, 148, 7, checksum);
+
+    out.write(header);
+    out.write(content);
+    int padding = (int) (padded(content.length) - content.length);
+    if (padding > 0) {
+      out.write(new byte[padding]);
+    }
+  }
+
+  private static long padded(long size) {
+    return (size + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+  }
+
+  /** Writes a zero padded, NUL terminated octal number in a field of the given length. */
+  private static void putOctal(byte[] header, int offset, int length, long value) {
+    String octal = Long.toOctalString(value);
+    int digits = length - 1;
+    for (int i = 0; i < digits; i++) {
+      int index = octal.length() - digits + i;
+      header[offset + i] = (byte) (index < 0 ? '0' : octal.charAt(index));
+    }
+    header[offset + digits] = 0;
+  }
+
+  private static void putString(byte[] header, int offset, String value) {
+    for (int i = 0; i < value.length(); i++) {
+      header[offset + i] = (byte) value.charAt(i);
+    }
+  }
+
+  private static long parseOctal(byte[] header, int offset, int length) {
+    long value = 0;
+    for (int i = offset; i < offset + length; i++) {
+      byte b = header[i];
+      if (b >= '0' && b <= '7') {
+        value = value * 8 + (b - '0');
+      } else if (b != ' ' || value != 0) {
+        break;
+      }
+    }
+    return value;
+  }
+
+  private static String parseString(byte[] bytes, int offset, int length) throws IOException {
+    int end = offset;
+    while (end < offset + length && bytes[end] != 0) {
+      end++;
+    }
+    return new String(bytes, offset, end - offset, "UTF-8");
+  }
+
+  private static void readFully(FileInputStream in, byte[] buffer) throws IOException {
+    int read = 0;
+    while (read < buffer.length) {
+      int count = in.read(buffer, read, buffer.length - read);
+      if (count < 0) {
+        throw new IOException("Unexpected end of file");
+      }
+      read += count;
+    }
+  }
+
+  private static class ArchiveEntry {
+    final File mArchive;
+    final long mOffset;
+    final long mLength;
+
+    ArchiveEntry(File archive, long offset, long length) {
+      mArchive = archive;
+      mOffset = offset;
+      mLength = length;
+    }
+  }
 }
@@ -22,20 +22,39 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Picture;
 import android.graphics.PorterDuff;
-import android.os.Handler;
-import android.os.Looper;
+import android.graphics.PorterDuffXfermode;
+import android.util.JsonWriter;
 import android.view.View;
 import com.facebook.infer.annotation.Nullsafe;
 import com.facebook.testing.screenshot.WindowAttachment;
-import com.facebook.testing.screenshot.layouthierarchy.AccessibilityHierarchyDumper;
-import com.facebook.testing.screenshot.layouthierarchy.AccessibilityIssuesDumper;
-import com.facebook.testing.screenshot.layouthierarchy.AccessibilityUtil;
+import com.facebook.testing.screenshot.layouthierarchy.AccessibilityHierarchyVisitor;
+import com.facebook.testing.screenshot.layouthierarchy.AccessibilityIssuesVisitor;
+import com.facebook.testing.screenshot.layouthierarchy.AccessibilityTreeVisitor;
+import com.facebook.testing.screenshot.layouthierarchy.JsonUtil;
 import com.facebook.testing.screenshot.layouthierarchy.LayoutHierarchyDumper;
+import com.facebook.testing.screenshot.layouthierarchy.LayoutHierarchyVisitor;
+import com.facebook.testing.screenshot.layouthierarchy.ViewTreeWalker;
 import com.google.common.base.Preconditions;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import javax.annotation.Nullable;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -59,16 +78,45 @@ public class ScreenshotImpl {
 
   @Nullable private static ScreenshotImpl sInstance;
 
+  /** Used when copying a rendered tile into the snapshot handed to the album. */
+  private static final Paint COPY_PAINT = createCopyPaint();
+
   /** The album of all the screenshots taken in this run. */
   private final Album mAlbum;
 
+  private final BitmapPool mBitmapPool;
+
+  /** The most memory a single adaptive tile may take, see {@link TileDimensions#forView}. */
+  private static final long MAX_TILE_BYTES =
+      Math.min(8L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 32);
+
   private int mTileSize = 512;
+  /** Whether every view is cut into square tiles of mTileSize, rather than sized per view. */
+  private boolean mFixedTileSize = false;
+
   @Nullable private Bitmap mBitmap = null;
+  /** The size mBitmap was acquired with, which bounds the tiles it can be reconfigured to. */
+  private int mBitmapWidth;
+
+  private int mBitmapHeight;
   @Nullable private Canvas mCanvas = null;
+  private final Canvas mSnapshotCanvas = new Canvas();
   private boolean mEnableBitmapReconfigure = true;
+  private boolean mEnablePictureRecording = false;
+  private boolean mPrettyPrintHierarchy = true;
+
+  /** Writes the artifacts of each record once its view has been captured, one at a time. */
+  @Nullable private ExecutorService mRecordExecutor;
+
+  private final List<Future<Void>> mPendingRecords = new ArrayList<>();
 
   ScreenshotImpl(Album album) {
+    this(album, BitmapPool.getInstance());
+  }
+
+  ScreenshotImpl(Album album, BitmapPool bitmapPool) {
     mAlbum = album;
+    mBitmapPool = bitmapPool;
   }
 
   /**
@@ -120,16 +168,48 @@ public class ScreenshotImpl {
     return mTileSize;
   }
 
+  /**
+   * Cuts every view into square tiles of the given size. By default the size of the tiles is picked
+   * for each view instead, see {@link TileDimensions}.
+   */
   public void setTileSize(int tileSize) {
     mTileSize = tileSize;
+    mFixedTileSize = true;
+    mBitmapPool.release(mBitmap);
     mBitmap = null;
     mCanvas = null;
   }
 
+  public boolean getEnablePictureRecording() {
+    return mEnablePictureRecording;
+  }
+
+  /**
+   * When enabled, views that span more than one tile are drawn only once into a {@link Picture}
+   * which is then replayed for every tile, instead of drawing the whole view hierarchy once per
+   * tile. This is much cheaper for tall views, but relies on the view rendering the same way into
+   * a recording canvas as it does into a bitmap.
+   */
+  public void setEnablePictureRecording(boolean enablePictureRecording) {
+    mEnablePictureRecording = enablePictureRecording;
+  }
+
+  public boolean getPrettyPrintHierarchy() {
+    return mPrettyPrintHierarchy;
+  }
+
+  /**
+   * Whether the view hierarchy dumps are indented. Turning this off makes the dumps smaller and a
+   * little faster to write.
+   */
+  public void setPrettyPrintHierarchy(boolean prettyPrintHierarchy) {
+    mPrettyPrintHierarchy = prettyPrintHierarchy;
+  }
+
   /** Snaps a screenshot of the activity using the testName as the name. */
   public RecordBuilderImpl snapActivity(final Activity activity) {
     if (!isUiThread()) {
-      return runCallableOnUiThread(
+      return UiThreadDispatcher.run(
               new Callable<RecordBuilderImpl>() {
                 @Override
                 public RecordBuilderImpl call() {
@@ -159,7 +239,11 @@ public class ScreenshotImpl {
 
   // VisibleForTesting
   public void flush() {
-    mAlbum.flush();
+    try {
+      awaitPendingRecords();
+    } finally {
+      mAlbum.flush();
+    }
   }
 
   private void storeBitmap(final RecordBuilderImpl recordBuilder) {
@@ -168,7 +252,7 @@ public class ScreenshotImpl {
     }
 
     if (!isUiThread()) {
-      runCallableOnUiThread(
+      UiThreadDispatcher.run(
           new Callable<Void>() {
             @Override
             public Void call() {
@@ -184,26 +268,48 @@ public class ScreenshotImpl {
       throw new RuntimeException("Can't take a screenshot, since this view is not measured");
     }
 
+    RecordTimings timings = recordBuilder.getTimings();
+    long attachStart = System.nanoTime();
     WindowAttachment.Detacher detacher = WindowAttachment.dispatchAttach(measuredView);
+    timings.addSince(RecordTimings.ATTACH, attachStart);
     try {
       int width = measuredView.getWidth();
       int height = measuredView.getHeight();
 
-      assertNotTooLarge(width, height, recordBuilder);
+      // In streaming mode only a bounded number of tiles is ever in memory, see TileWriter
+      boolean streaming = recordBuilder.getStreamingCapture();
+      if (!streaming) {
+        assertNotTooLarge(width, height, recordBuilder);
+      }
 
-      int maxi = (width + mTileSize - 1) / mTileSize;
-      int maxj = (height + mTileSize - 1) / mTileSize;
-      recordBuilder.setTiling(new Tiling(maxi, maxj));
+      TileDimensions tileDimensions =
+          mFixedTileSize
+              ? TileDimensions.square(mTileSize)
+              : TileDimensions.forView(width, height, MAX_TILE_BYTES);
+      int maxi = tileDimensions.getColumns(width);
+      int maxj = tileDimensions.getRows(height);
+      recordBuilder
+          .setImageSize(width, height)
+          .setTiling(new Tiling(maxi, maxj, tileDimensions.getWidth(), tileDimensions.getHeight()));
+      lazyInitBitmap(tileDimensions.getWidth(), tileDimensions.getHeight());
+
+      // A recording of the whole view grows with the view, so it's not used when streaming
+      Picture picture = null;
+      if (mEnablePictureRecording && !streaming && maxi * maxj > 1) {
+        long drawStart = System.nanoTime();
+        picture = recordPicture(measuredView, width, height);
+        timings.addSince(RecordTimings.DRAW, drawStart);
+      }
 
       for (int i = 0; i < maxi; i++) {
         for (int j = 0; j < maxj; j++) {
-          drawTile(measuredView, i, j, recordBuilder);
+          drawTile(measuredView, picture, i, j, tileDimensions, recordBuilder);
         }
       }
-    } catch (IOException e) {
-      throw new RuntimeException(e);
     } finally {
+      long detachStart = System.nanoTime();
       detacher.detach();
+      timings.addSince(RecordTimings.ATTACH, detachStart);
     }
   }
 
@@ -218,43 +324,85 @@ public class ScreenshotImpl {
     }
   }
 
-  private void drawTile(View measuredView, int i, int j, RecordBuilderImpl recordBuilder)
-      throws IOException {
+  private void drawTile(
+      View measuredView,
+      @Nullable Picture picture,
+      int i,
+      int j,
+      TileDimensions tileDimensions,
+      RecordBuilderImpl recordBuilder) {
     int width = measuredView.getWidth();
     int height = measuredView.getHeight();
-    int left = i * mTileSize;
-    int top = j * mTileSize;
-    int right = Math.min(left + mTileSize, width);
-    int bottom = Math.min(top + mTileSize, height);
-
-    lazyInitBitmap();
+    int left = i * tileDimensions.getWidth();
+    int top = j * tileDimensions.getHeight();
+    int right = Math.min(left + tileDimensions.getWidth(), width);
+    int bottom = Math.min(top + tileDimensions.getHeight(), height);
 
+    long drawStart = System.nanoTime();
     if (mEnableBitmapReconfigure) {
       Preconditions.checkNotNull(mBitmap)
           .reconfigure(right - left, bottom - top, Bitmap.Config.ARGB_8888);
-      mCanvas = new Canvas(mBitmap);
+      // NULLSAFE_FIXME[Nullable Dereference]
+      mCanvas.setBitmap(mBitmap);
     }
     // NULLSAFE_FIXME[Parameter Not Nullable]
     clearCanvas(mCanvas);
 
-    // NULLSAFE_FIXME[Parameter Not Nullable]
-    drawClippedView(measuredView, left, top, mCanvas);
-    // NULLSAFE_FIXME[Parameter Not Nullable]
-    String tempName = mAlbum.writeBitmap(recordBuilder.getName(), i, j, mBitmap);
+    if (picture != null) {
+      // NULLSAFE_FIXME[Parameter Not Nullable]
+      drawClippedPicture(picture, left, top, mCanvas);
+    } else {
+      // NULLSAFE_FIXME[Parameter Not Nullable]
+      drawClippedView(measuredView, left, top, mCanvas);
+    }
+
+    // The album compresses and writes the tile on a background thread, so hand it a snapshot of
+    // the pixels and keep reusing mBitmap for the next tile.
+    Bitmap snapshot = snapshotTile(Preconditions.checkNotNull(mBitmap));
+    recordBuilder.getTimings().addSince(RecordTimings.DRAW, drawStart);
+    String tempName = mAlbum.writeBitmapAsync(recordBuilder.getName(), i, j, snapshot);
     if (tempName == null) {
       throw new NullPointerException();
     }
-    recordBuilder.getTiling().setAt(left / mTileSize, top / mTileSize, tempName);
+    recordBuilder.getTiling().setAt(i, j, tempName);
   }
 
-  private void lazyInitBitmap() {
+  /**
+   * Makes sure mBitmap can hold tiles of the given size. Without reconfiguring, each tile is drawn
+   * into the whole bitmap, so it has to be of exactly that size.
+   */
+  private void lazyInitBitmap(int tileWidth, int tileHeight) {
     if (mBitmap != null) {
-      return;
+      boolean fits =
+          mEnableBitmapReconfigure
+              ? (long) tileWidth * tileHeight <= (long) mBitmapWidth * mBitmapHeight
+              : tileWidth == mBitmapWidth && tileHeight == mBitmapHeight;
+      if (fits) {
+        return;
+      }
+      mBitmapPool.release(mBitmap);
     }
-    mBitmap = Bitmap.createBitmap(mTileSize, mTileSize, Bitmap.Config.ARGB_8888);
+    mBitmap = mBitmapPool.acquire(tileWidth, tileHeight);
+    mBitmapWidth = tileWidth;
+    mBitmapHeight = tileHeight;
     mCanvas = new Canvas(mBitmap);
   }
 
+  /** Copies the tile into a pooled bitmap, which the album releases once it's written. */
+  private Bitmap snapshotTile(Bitmap tile) {
+    Bitmap snapshot = mBitmapPool.acquire(tile.getWidth(), tile.getHeight());
+    mSnapshotCanvas.setBitmap(snapshot);
+    mSnapshotCanvas.drawBitmap(tile, 0, 0, COPY_PAINT);
+    mSnapshotCanvas.setBitmap(null);
+    return snapshot;
+  }
+
+  private static Paint createCopyPaint() {
+    Paint paint = new Paint();
+    paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+    return paint;
+  }
+
   private void clearCanvas(Canvas canvas) {
     canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.SRC);
   }
@@ -273,40 +421,269 @@ public class ScreenshotImpl {
     canvas.translate(left, top);
   }
 
+  /** Records the drawing commands of the whole view, so that they can be replayed per tile. */
+  private static Picture recordPicture(View view, int width, int height) {
+    Picture picture = new Picture();
+    Canvas canvas = picture.beginRecording(width, height);
+    try {
+      view.draw(canvas);
+    } finally {
+      picture.endRecording();
+    }
+    return picture;
+  }
+
+  /** Same as {@link #drawClippedView} but replays a recording made by {@link #recordPicture}. */
+  private void drawClippedPicture(Picture picture, int left, int top, Canvas canvas) {
+    canvas.translate(-left, -top);
+    picture.draw(canvas);
+    canvas.translate(left, top);
+  }
+
+  /**
+   * Records all the RecordBuilderImpls. The views of all of them are drawn in a single trip to the
+   * UI thread, which is much cheaper than recording them one by one from a test thread.
+   */
+  public void recordAll(final List<RecordBuilderImpl> recordBuilders) {
+    UiThreadDispatcher.run(
+        new Callable<Void>() {
+          @Override
+          public Void call() {
+            for (RecordBuilderImpl recordBuilder : recordBuilders) {
+              storeBitmap(recordBuilder);
+            }
+            return null;
+          }
+        });
+    for (RecordBuilderImpl recordBuilder : recordBuilders) {
+      recordBuilder.record();
+    }
+  }
+
   /** Records the RecordBuilderImpl, and verifies if required */
   public void record(RecordBuilderImpl recordBuilder) {
+    Future<Void> future = record(recordBuilder, false);
+    try {
+      waitFor(future);
+    } finally {
+      // The caller gets the failure, if any, so flush() doesn't need to report it again
+      synchronized (this) {
+        mPendingRecords.remove(future);
+      }
+    }
+  }
+
+  /**
+   * Same as {@link #record(RecordBuilderImpl)}, but only waits for the view to be drawn and its
+   * hierarchy to be captured. Writing the artifacts and the metadata happens in the background, and
+   * is complete once the returned future is done, or once {@link #flush()} returns.
+   */
+  public Future<Void> recordAsync(RecordBuilderImpl recordBuilder) {
+    return record(recordBuilder, true);
+  }
+
+  /**
+   * Draws the view and walks its hierarchy on the calling thread, then queues the rest of the work.
+   * The queue is processed in order by a single thread, so records reach the album one at a time.
+   *
+   * @param bufferDump whether to keep the hierarchy dump in memory until the background work writes
+   *     it, rather than streaming it to the album right away.
+   */
+  private Future<Void> record(final RecordBuilderImpl recordBuilder, boolean bufferDump) {
     storeBitmap(recordBuilder);
+    final RecordTimings timings = recordBuilder.getTimings();
     try {
-      JSONObject dump = new JSONObject();
-      JSONObject viewDump = LayoutHierarchyDumper.create().dumpHierarchy(recordBuilder.getView());
-      dump.put("viewHierarchy", viewDump);
-      dump.put("version", METADATA_VERSION);
-
-      AccessibilityUtil.AXTreeNode axTree =
-          recordBuilder.getIncludeAccessibilityInfo()
-              ? AccessibilityUtil.generateAccessibilityTree(recordBuilder.getView(), null)
-              : null;
-      dump.put("axHierarchy", AccessibilityHierarchyDumper.dumpHierarchy(axTree));
-      mAlbum.writeViewHierarchyFile(recordBuilder.getName(), dump.toString(2));
-
-      if (axTree != null) {
-        JSONObject issues = new JSONObject();
-        issues.put("axIssues", AccessibilityIssuesDumper.dumpIssues(axTree));
-        mAlbum.writeAxIssuesFile(recordBuilder.getName(), issues.toString(2));
+      long hierarchyStart = System.nanoTime();
+      View view = recordBuilder.getView();
+      final ByteArrayOutputStream bufferedDump = bufferDump ? new ByteArrayOutputStream() : null;
+      Writer out =
+          new BufferedWriter(
+              new OutputStreamWriter(
+                  bufferedDump != null
+                      ? bufferedDump
+                      : mAlbum.openViewHierarchyFile(recordBuilder.getName()),
+                  "UTF-8"));
+      JsonWriter dump = new JsonWriter(out);
+      AccessibilityTreeVisitor axTreeVisitor = null;
+      AccessibilityIssuesVisitor axIssuesVisitor = null;
+      boolean complete = false;
+      try {
+        if (mPrettyPrintHierarchy) {
+          dump.setIndent("  ");
+        }
+
+        // The layout hierarchy, the accessibility hierarchy and the accessibility issues are all
+        // gathered in a single walk over the view hierarchy
+        List<ViewTreeWalker.Visitor> visitors = new ArrayList<>();
+        visitors.add(new LayoutHierarchyVisitor(LayoutHierarchyDumper.create(), dump, view));
+        AccessibilityHierarchyVisitor axHierarchyVisitor = null;
+        if (recordBuilder.getIncludeAccessibilityInfo()) {
+          axTreeVisitor = new AccessibilityTreeVisitor();
+          axHierarchyVisitor = new AccessibilityHierarchyVisitor(axTreeVisitor);
+          axIssuesVisitor = new AccessibilityIssuesVisitor(axTreeVisitor);
+          visitors.add(axTreeVisitor);
+          visitors.add(axHierarchyVisitor);
+          visitors.add(axIssuesVisitor);
+        }
+
+        dump.beginObject();
+        dump.name("viewHierarchy");
+        new ViewTreeWalker(visitors).walk(view);
+        dump.name("version").value(METADATA_VERSION);
+        dump.name("axHierarchy");
+        JsonUtil.writeValue(
+            dump,
+            axHierarchyVisitor != null ? axHierarchyVisitor.getHierarchy() : new JSONObject());
+        dump.endObject();
+        complete = true;
+      } finally {
+        // The accessibility rules only look at a snapshot of the tree, the node infos can go
+        if (axTreeVisitor != null) {
+          axTreeVisitor.recycle();
+        }
+        timings.addSince(RecordTimings.HIERARCHY, hierarchyStart);
+        if (complete) {
+          dump.close();
+        } else {
+          // Closing an unfinished JsonWriter throws, which would hide why it's unfinished
+          closeQuietly(out);
+        }
       }
 
-      mAlbum.addRecord(recordBuilder);
+      final AccessibilityIssuesVisitor finalAxIssuesVisitor = axIssuesVisitor;
+      final long submitted = System.nanoTime();
+      return submitRecord(
+          new Callable<Void>() {
+            @Override
+            public Void call() throws IOException, JSONException {
+              timings.addSince(RecordTimings.WAIT, submitted);
+              if (bufferedDump != null) {
+                long dumpStart = System.nanoTime();
+                OutputStream out = mAlbum.openViewHierarchyFile(recordBuilder.getName());
+                try {
+                  bufferedDump.writeTo(out);
+                } finally {
+                  out.close();
+                }
+                timings.addSince(RecordTimings.HIERARCHY, dumpStart);
+              }
+
+              if (finalAxIssuesVisitor != null) {
+                long issuesStart = System.nanoTime();
+                JSONObject issues = new JSONObject();
+                issues.put("axIssues", finalAxIssuesVisitor.getIssues());
+                mAlbum.writeAxIssuesFile(recordBuilder.getName(), issues.toString(2));
+                timings.addSince(RecordTimings.ACCESSIBILITY, issuesStart);
+              }
+
+              // Tiles are still being encoded in the background, make sure they're all on disk
+              // before the record is added to the metadata.
+              long writesStart = System.nanoTime();
+              mAlbum.awaitPendingWrites();
+              timings.addSince(RecordTimings.WAIT, writesStart);
+              mAlbum.addRecord(recordBuilder);
+              return null;
+            }
+          });
     } catch (IOException | JSONException e) {
       throw new RuntimeException(e);
     }
   }
 
+  private static void closeQuietly(Closeable closeable) {
+    try {
+      closeable.close();
+    } catch (IOException e) {
+      // Already failing with a more relevant exception
+    }
+  }
+
+  private synchronized Future<Void> submitRecord(Callable<Void> task) {
+    if (mRecordExecutor == null) {
+      mRecordExecutor = Executors.newSingleThreadExecutor(new RecordThreadFactory());
+    }
+    // Failed records are kept, nobody may be waiting on them but flush()
+    Iterator<Future<Void>> iterator = mPendingRecords.iterator();
+    while (iterator.hasNext()) {
+      if (hasSucceeded(iterator.next())) {
+        iterator.remove();
+      }
+    }
+    Future<Void> future = mRecordExecutor.submit(task);
+    mPendingRecords.add(future);
+    return future;
+  }
+
+  /** Blocks until every record has been written, rethrowing the first failure if any. */
+  private void awaitPendingRecords() {
+    List<Future<Void>> pending;
+    synchronized (this) {
+      pending = new ArrayList<>(mPendingRecords);
+      mPendingRecords.clear();
+    }
+    RuntimeException failure = null;
+    for (Future<Void> future : pending) {
+      try {
+        waitFor(future);
+      } catch (RuntimeException e) {
+        if (failure == null) {
+          failure = e;
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private static boolean hasSucceeded(Future<Void> future) {
+    if (!future.isDone() || future.isCancelled()) {
+      return false;
+    }
+    try {
+      future.get();
+      return true;
+    } catch (InterruptedException | ExecutionException e) {
+      return false;
+    }
+  }
+
+  private static void waitFor(Future<Void> future) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          future.get();
+          return;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          } else if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw new RuntimeException(cause);
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
   Bitmap getBitmap(RecordBuilderImpl recordBuilder) {
     if (recordBuilder.getTiling().getAt(0, 0) != null) {
       throw new IllegalArgumentException("can't call getBitmap() after record()");
     }
+    if (recordBuilder.getStreamingCapture()) {
+      throw new IllegalStateException("can't call getBitmap() with streaming capture");
+    }
 
     View view = recordBuilder.getView();
+    // Handed to the caller, who never releases it, so it doesn't come from the pool
     Bitmap bmp = Bitmap.createBitmap(view.getWidth(), view.getHeight(), Bitmap.Config.ARGB_8888);
 
     WindowAttachment.Detacher detacher = WindowAttachment.dispatchAttach(recordBuilder.getView());
@@ -320,42 +697,7 @@ public class ScreenshotImpl {
   }
 
   private boolean isUiThread() {
-    return Looper.getMainLooper().getThread() == Thread.currentThread();
-  }
-
-  private <T> T runCallableOnUiThread(final Callable<T> callable) {
-    final T[] ret = (T[]) new Object[1];
-    final Exception[] e = new Exception[1];
-    final Object lock = new Object();
-    Handler handler = new Handler(Looper.getMainLooper());
-
-    synchronized (lock) {
-      handler.post(
-          new Runnable() {
-            @Override
-            public void run() {
-              try {
-                ret[0] = callable.call();
-              } catch (Exception ee) {
-                e[0] = ee;
-              }
-              synchronized (lock) {
-                lock.notifyAll();
-              }
-            }
-          });
-
-      try {
-        lock.wait();
-      } catch (InterruptedException ee) {
-        throw new RuntimeException(ee);
-      }
-    }
-
-    if (e[0] != null) {
-      throw new RuntimeException(e[0]);
-    }
-    return ret[0];
+    return UiThreadDispatcher.isUiThread();
   }
 
   /**
@@ -364,4 +706,13 @@ public class ScreenshotImpl {
   public static long getMaxPixels() {
     return RecordBuilderImpl.DEFAULT_MAX_PIXELS;
   }
+
+  private static class RecordThreadFactory implements ThreadFactory {
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "screenshot-recorder");
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
 }
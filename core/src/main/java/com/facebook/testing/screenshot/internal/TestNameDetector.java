@@ -19,9 +19,17 @@ package com.facebook.testing.screenshot.internal;
 import com.facebook.infer.annotation.Nullsafe;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nullable;
 
-/** Detect the test name and class that is being run currently. */
+/**
+ * Detect the test name and class that is being run currently.
+ *
+ * <p>The test published to the {@link CurrentTestRegistry} is used when there is one. Otherwise we
+ * fall back to walking the stack, remembering which frames are part of a test so that the
+ * reflection is only done once per method.
+ */
 @Nullsafe(Nullsafe.Mode.LOCAL)
 public class TestNameDetector {
   private static final String JUNIT_TEST_CASE = "junit.framework.TestCase";
@@ -29,6 +37,12 @@ public class TestNameDetector {
   private static final String JUNIT_TEST = "org.junit.Test";
   private static final String UNKNOWN = "unknown";
 
+  /** Whether each class is a test class, keyed by class name. */
+  private static final Map<String, Boolean> sTestClasses = new ConcurrentHashMap<>();
+
+  /** Whether each frame belongs to a test, keyed by class and method name. */
+  private static final Map<String, Boolean> sTestFrames = new ConcurrentHashMap<>();
+
   private TestNameDetector() {}
 
   /**
@@ -36,6 +50,11 @@ public class TestNameDetector {
    * detect it.
    */
   public static String getTestClass() {
+    CurrentTestRegistry.CurrentTest currentTest = CurrentTestRegistry.getCurrentTest();
+    if (currentTest != null) {
+      return currentTest.mTestClass;
+    }
+
     StackTraceElement element = getFirstTestElement(new Throwable().getStackTrace());
     if (element == null) {
       return UNKNOWN;
@@ -48,6 +67,11 @@ public class TestNameDetector {
    * detect it.
    */
   public static String getTestName() {
+    CurrentTestRegistry.CurrentTest currentTest = CurrentTestRegistry.getCurrentTest();
+    if (currentTest != null) {
+      return currentTest.mTestName;
+    }
+
     StackTraceElement[] stack = new Throwable().getStackTrace();
     StackTraceElement testElement = getFirstTestElement(stack);
     if (testElement == null) {
@@ -64,21 +88,45 @@ public class TestNameDetector {
 
   private static @Nullable StackTraceElement getFirstTestElement(StackTraceElement[] stack) {
     for (StackTraceElement element : stack) {
-      try {
-        Class<?> clazz = Class.forName(element.getClassName());
-        Method method = clazz.getMethod(element.getMethodName());
-        if (isTestClass(clazz) || isTestMethod(method)) {
-          return element;
-        }
-      } catch (NoSuchMethodException ignored) {
-        // Not actionable, move onto the next element
-      } catch (ClassNotFoundException ignored) {
-        // Not actionable, move onto the next element
+      if (isTestFrame(element)) {
+        return element;
       }
     }
     return null;
   }
 
+  private static boolean isTestFrame(StackTraceElement element) {
+    String key = element.getClassName() + '#' + element.getMethodName();
+    Boolean isTestFrame = sTestFrames.get(key);
+    if (isTestFrame == null) {
+      isTestFrame = computeIsTestFrame(element);
+      sTestFrames.put(key, isTestFrame);
+    }
+    return isTestFrame;
+  }
+
+  private static boolean computeIsTestFrame(StackTraceElement element) {
+    try {
+      Class<?> clazz = Class.forName(element.getClassName());
+      Method method = clazz.getMethod(element.getMethodName());
+      return isTestClassCached(clazz) || isTestMethod(method);
+    } catch (NoSuchMethodException ignored) {
+      // Not actionable, move onto the next element
+    } catch (ClassNotFoundException ignored) {
+      // Not actionable, move onto the next element
+    }
+    return false;
+  }
+
+  private static boolean isTestClassCached(Class<?> clazz) {
+    Boolean isTestClass = sTestClasses.get(clazz.getName());
+    if (isTestClass == null) {
+      isTestClass = isTestClass(clazz);
+      sTestClasses.put(clazz.getName(), isTestClass);
+    }
+    return isTestClass;
+  }
+
   private static boolean isTestClass(@Nullable Class<?> clazz) {
     return clazz != null
         && (JUNIT_TEST_CASE.equals(clazz.getCanonicalName())
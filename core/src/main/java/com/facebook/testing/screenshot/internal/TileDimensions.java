@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.internal;
+
+import com.facebook.infer.annotation.Nullsafe;
+
+/**
+ * The size in pixels of the tiles a view is cut into. Tiles on the right and bottom edges may be
+ * smaller.
+ *
+ * <p>Unless a fixed size is requested, tiles are sized for each view: as wide as the view when
+ * possible, then as tall as fits in {@code maxTileBytes}, and balanced so that the edge tiles
+ * aren't slivers. Fewer, larger tiles mean fewer draws, files and pulls.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+final class TileDimensions {
+  /** Keeps tiles within the bitmap and texture sizes every device can handle. */
+  static final int MAX_TILE_SIDE = 2048;
+
+  private static final int BYTES_PER_PIXEL = 4;
+
+  private final int mWidth;
+  private final int mHeight;
+
+  private TileDimensions(int width, int height) {
+    mWidth = width;
+    mHeight = height;
+  }
+
+  static TileDimensions square(int size) {
+    return new TileDimensions(size, size);
+  }
+
+  static TileDimensions forView(int viewWidth, int viewHeight, long maxTileBytes) {
+    int columns = divideRoundingUp(viewWidth, MAX_TILE_SIDE);
+    int width = divideRoundingUp(viewWidth, columns);
+
+    long maxRows = maxTileBytes / BYTES_PER_PIXEL / Math.max(1, width);
+    int rowsPerTile = (int) Math.max(1, Math.min(MAX_TILE_SIDE, maxRows));
+    int rows = divideRoundingUp(viewHeight, rowsPerTile);
+    int height = divideRoundingUp(viewHeight, rows);
+
+    return new TileDimensions(Math.max(1, width), Math.max(1, height));
+  }
+
+  int getWidth() {
+    return mWidth;
+  }
+
+  int getHeight() {
+    return mHeight;
+  }
+
+  /** The number of tiles needed across a view of the given width. */
+  int getColumns(int viewWidth) {
+    return divideRoundingUp(viewWidth, mWidth);
+  }
+
+  /** The number of tiles needed down a view of the given height. */
+  int getRows(int viewHeight) {
+    return divideRoundingUp(viewHeight, mHeight);
+  }
+
+  private static int divideRoundingUp(int dividend, int divisor) {
+    return Math.max(1, (dividend + divisor - 1) / divisor);
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.internal;
+
+import android.graphics.Bitmap;
+import com.facebook.infer.annotation.Nullsafe;
+import java.nio.IntBuffer;
+
+/**
+ * The raw pixel buffer of a tile, copied out of the bitmap once so that it can be inspected before
+ * the tile gets compressed.
+ *
+ * <p>The backing array is reused between tiles written on the same thread, so an instance is only
+ * valid until the next call to {@link #read} on that thread.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+class TilePixels {
+  private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+  private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+  private static final long PRIME_3 = 0x165667B19E3779F9L;
+  private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+
+  private static final ThreadLocal<int[]> sBuffers =
+      new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+          return new int[0];
+        }
+      };
+
+  private final int mWidth;
+  private final int mHeight;
+  private final int[] mPixels;
+
+  private TilePixels(int width, int height, int[] pixels) {
+    mWidth = width;
+    mHeight = height;
+    mPixels = pixels;
+  }
+
+  /** Copies the pixels of the bitmap, exactly as they are stored in memory. */
+  static TilePixels read(Bitmap bitmap) {
+    int width = bitmap.getWidth();
+    int height = bitmap.getHeight();
+    int size = width * height;
+
+    int[] pixels = sBuffers.get();
+    if (pixels.length < size) {
+      pixels = new int[size];
+      sBuffers.set(pixels);
+    }
+
+    bitmap.copyPixelsToBuffer(IntBuffer.wrap(pixels, 0, size));
+    return new TilePixels(width, height, pixels);
+  }
+
+  int getWidth() {
+    return mWidth;
+  }
+
+  int getHeight() {
+    return mHeight;
+  }
+
+  /**
+   * The pixels, row by row, in the bitmap's byte order. Only the first {@code width * height} are
+   * part of the tile, the array may be larger.
+   */
+  int[] getPixels() {
+    return mPixels;
+  }
+
+  /** Whether every pixel of the tile is the same, e.g. because it's entirely transparent. */
+  boolean isUniform() {
+    int size = mWidth * mHeight;
+    if (size == 0) {
+      return false;
+    }
+    int first = mPixels[0];
+    for (int i = 1; i < size; i++) {
+      if (mPixels[i] != first) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * A 128 bit hash of the dimensions and pixels of the tile, as a hex string.
+   *
+   * <p>This is not a standard hash function: it's two 64 bit lanes of multiply-rotate mixing, with
+   * different seeds and constants, each finished with the avalanche step of xxHash64. It's fast and
+   * not cryptographic, but wide enough that tiles with the same hash can be treated as identical,
+   * which deduplicating tiles relies on.
+   */
+  String hash() {
+    int size = mWidth * mHeight;
+    long dimensions = (long) mWidth << 32 | mHeight;
+    long high = PRIME_4 ^ (dimensions * PRIME_1);
+    long low = PRIME_3 ^ (dimensions * PRIME_2);
+    for (int i = 0; i < size; i++) {
+      long pixel = mPixels[i] & 0xffffffffL;
+      high ^= Long.rotateLeft(pixel * PRIME_2, 31) * PRIME_1;
+      high = Long.rotateLeft(high, 27) * PRIME_1 + PRIME_4;
+      low ^= Long.rotateLeft(pixel * PRIME_1, 29) * PRIME_2;
+      low = Long.rotateLeft(low, 31) * PRIME_2 + PRIME_3;
+    }
+    return toHex(avalanche(high)) + toHex(avalanche(low));
+  }
+
+  private static long avalanche(long hash) {
+    hash ^= hash >>> 33;
+    hash *= PRIME_2;
+    hash ^= hash >>> 29;
+    hash *= PRIME_3;
+    hash ^= hash >>> 32;
+    return hash;
+  }
+
+  private static String toHex(long value) {
+    String hex = Long.toHexString(value);
+    StringBuilder sb = new StringBuilder(16);
+    for (int i = hex.length(); i < 16; i++) {
+      sb.append('0');
+    }
+    return sb.append(hex).toString();
+  }
+}
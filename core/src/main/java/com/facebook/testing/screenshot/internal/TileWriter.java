@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.internal;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs tile encoding and persistence on a pool of background threads.
+ *
+ * <p>The tiles in flight are bounded both in number and in bytes: once either limit is reached
+ * {@link #submit} blocks until a worker is done, so that the caller can't queue up more pixel data
+ * than we're willing to hold in memory, however large the view being captured is.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+class TileWriter {
+  private static final int MAX_PENDING_TILES_PER_THREAD = 2;
+  private static final int MAX_PENDING_HEAP_FRACTION = 16;
+
+  private final ExecutorService mExecutor;
+  private final Semaphore mPendingPermits;
+  /** The budget for the pixels of the tiles in flight, in kilobytes. */
+  private final Semaphore mPendingKilobytes;
+
+  private final int mMaxPendingKilobytes;
+  private final List<Future<Void>> mPending = new ArrayList<>();
+
+  TileWriter() {
+    this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+  }
+
+  TileWriter(int threadCount) {
+    this(threadCount, getDefaultMaxPendingKilobytes());
+  }
+
+  TileWriter(int threadCount, int maxPendingKilobytes) {
+    mExecutor = Executors.newFixedThreadPool(threadCount, new WorkerThreadFactory());
+    mPendingPermits = new Semaphore(threadCount * MAX_PENDING_TILES_PER_THREAD);
+    mMaxPendingKilobytes = Math.max(1, maxPendingKilobytes);
+    mPendingKilobytes = new Semaphore(mMaxPendingKilobytes);
+  }
+
+  /**
+   * Queues the given task, blocking if too many tiles, or too many bytes of tiles, are already
+   * waiting to be written. A single tile larger than the whole budget is still accepted, once
+   * nothing else is in flight.
+   *
+   * @param bytes the memory held by the task until it completes
+   */
+  void submit(final Callable<Void> task, long bytes) {
+    final int kilobytes = (int) Math.min(mMaxPendingKilobytes, Math.max(1, (bytes + 1023) / 1024));
+    mPendingKilobytes.acquireUninterruptibly(kilobytes);
+    mPendingPermits.acquireUninterruptibly();
+    Future<Void> future;
+    try {
+      future =
+          mExecutor.submit(
+              new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                  try {
+                    return task.call();
+                  } finally {
+                    mPendingPermits.release();
+                    mPendingKilobytes.release(kilobytes);
+                  }
+                }
+              });
+    } catch (RuntimeException e) {
+      mPendingPermits.release();
+      mPendingKilobytes.release(kilobytes);
+      throw e;
+    }
+
+    synchronized (mPending) {
+      mPending.add(future);
+    }
+  }
+
+  /** Blocks until every task submitted so far has completed, rethrowing the first failure. */
+  void awaitPendingWrites() throws IOException {
+    List<Future<Void>> pending;
+    synchronized (mPending) {
+      pending = new ArrayList<>(mPending);
+      mPending.clear();
+    }
+
+    IOException firstFailure = null;
+    for (Future<Void> future : pending) {
+      try {
+        getUninterruptibly(future);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        if (firstFailure == null) {
+          firstFailure =
+              cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+      }
+    }
+
+    if (firstFailure != null) {
+      throw firstFailure;
+    }
+  }
+
+  private static <T> T getUninterruptibly(Future<T> future) throws ExecutionException {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return future.get();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static int getDefaultMaxPendingKilobytes() {
+    long kilobytes = Runtime.getRuntime().maxMemory() / MAX_PENDING_HEAP_FRACTION / 1024;
+    return (int) Math.min(Integer.MAX_VALUE, kilobytes);
+  }
+
+  private static class WorkerThreadFactory implements ThreadFactory {
+    private final AtomicInteger mCount = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "screenshot-tile-writer-" + mCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -27,11 +27,25 @@ public class Tiling {
   private int mWidth;
   private int mHeight;
   private String[][] mContents;
+  private int mTilePixelWidth;
+  private int mTilePixelHeight;
 
   public Tiling(int width, int height) {
+    this(width, height, 0, 0);
+  }
+
+  /**
+   * @param tilePixelWidth the width in pixels of every tile but the ones on the right edge, or 0
+   *     if unknown
+   * @param tilePixelHeight the height in pixels of every tile but the ones on the bottom edge, or 0
+   *     if unknown
+   */
+  public Tiling(int width, int height, int tilePixelWidth, int tilePixelHeight) {
     mWidth = width;
     mHeight = height;
     mContents = new String[width][height];
+    mTilePixelWidth = tilePixelWidth;
+    mTilePixelHeight = tilePixelHeight;
   }
 
   /** Convenience factory method for tests */
@@ -49,6 +63,14 @@ public class Tiling {
     return mWidth;
   }
 
+  public int getTilePixelWidth() {
+    return mTilePixelWidth;
+  }
+
+  public int getTilePixelHeight() {
+    return mTilePixelHeight;
+  }
+
   public String getAt(int x, int y) {
     return mContents[x][y];
   }
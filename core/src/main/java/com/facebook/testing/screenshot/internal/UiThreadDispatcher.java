@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.internal;
+
+import android.os.Handler;
+import android.os.Looper;
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Runs work on the UI thread and waits for its result. Callers that have several things to do on
+ * the UI thread should batch them into a single callable, each call is a round trip through the
+ * main looper.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+class UiThreadDispatcher {
+  private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+  private UiThreadDispatcher() {}
+
+  static boolean isUiThread() {
+    return Looper.getMainLooper().getThread() == Thread.currentThread();
+  }
+
+  /**
+   * Calls the callable on the UI thread, directly if that's the current thread. Exceptions thrown
+   * by the callable are rethrown wrapped in a {@link RuntimeException}.
+   */
+  static <T> T run(Callable<T> callable) {
+    if (isUiThread()) {
+      try {
+        return callable.call();
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    FutureTask<T> task = new FutureTask<>(callable);
+    sMainHandler.post(task);
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+}
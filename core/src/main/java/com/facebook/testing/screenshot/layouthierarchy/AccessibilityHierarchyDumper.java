@@ -37,13 +37,35 @@ public final class AccessibilityHierarchyDumper {
 
   AccessibilityHierarchyDumper() {}
 
+  /**
+   * Dumps the given tree. The node infos of the tree are left as they are, it's up to the caller to
+   * {@link AccessibilityUtil.AXTreeNode#recycle()} the tree once it's done with it.
+   */
   public static JSONObject dumpHierarchy(@Nullable AccessibilityUtil.AXTreeNode axTree)
       throws JSONException {
-    JSONObject root = new JSONObject();
     if (axTree == null) {
-      return root;
+      return new JSONObject();
     }
 
+    JSONObject root = dumpNode(axTree);
+
+    if (axTree.getChildCount() > 0) {
+      JSONArray children = new JSONArray();
+      for (AccessibilityUtil.AXTreeNode child : axTree.getChildren()) {
+        JSONObject childSerialization = dumpHierarchy(child);
+        children.put(childSerialization);
+      }
+      root.put("children", children);
+    } else {
+      root.put("children", JSONObject.NULL);
+    }
+
+    return root;
+  }
+
+  /** Dumps the given node, without its children. */
+  static JSONObject dumpNode(AccessibilityUtil.AXTreeNode axTree) throws JSONException {
+    JSONObject root = new JSONObject();
     View view = axTree.getView();
     AccessibilityNodeInfoCompat nodeInfo = axTree.getNodeInfo();
 
@@ -150,26 +172,18 @@ public final class AccessibilityHierarchyDumper {
       }
 
       root.put("text", jsonNullOr(nodeInfo.getText()));
-
-      nodeInfo.recycle();
-    }
-
-    if (axTree.getChildCount() > 0) {
-      JSONArray children = new JSONArray();
-      for (AccessibilityUtil.AXTreeNode child : axTree.getChildren()) {
-        JSONObject childSerialization = dumpHierarchy(child);
-        children.put(childSerialization);
-      }
-      root.put("children", children);
-    } else {
-      root.put("children", JSONObject.NULL);
     }
 
     return root;
   }
 
   public static JSONObject dumpHierarchy(View view) throws JSONException {
-    return dumpHierarchy(AccessibilityUtil.generateAccessibilityTree(view, null));
+    AccessibilityUtil.AXTreeNode axTree = AccessibilityUtil.generateAccessibilityTree(view, null);
+    try {
+      return dumpHierarchy(axTree);
+    } finally {
+      axTree.recycle();
+    }
   }
 
   private static Object jsonNullOr(@Nullable Object obj) {
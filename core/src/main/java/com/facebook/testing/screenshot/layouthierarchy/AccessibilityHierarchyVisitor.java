@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.layouthierarchy;
+
+import android.view.View;
+import android.view.ViewGroup;
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import javax.annotation.Nullable;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Builds the same dump as {@link AccessibilityHierarchyDumper#dumpHierarchy} as part of a {@link
+ * ViewTreeWalker} walk. It must come after the given {@link AccessibilityTreeVisitor} in the walk.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class AccessibilityHierarchyVisitor implements ViewTreeWalker.Visitor {
+  private final AccessibilityTreeVisitor mTreeVisitor;
+  private final Deque<JSONArray> mChildren = new ArrayDeque<>();
+  @Nullable private JSONObject mRoot;
+
+  public AccessibilityHierarchyVisitor(AccessibilityTreeVisitor treeVisitor) {
+    mTreeVisitor = treeVisitor;
+  }
+
+  @Override
+  public boolean enter(View view) throws JSONException {
+    JSONObject node = AccessibilityHierarchyDumper.dumpNode(mTreeVisitor.getCurrentNode());
+    JSONArray siblings = mChildren.peek();
+    if (siblings == null) {
+      mRoot = node;
+    } else {
+      siblings.put(node);
+    }
+
+    if (!(view instanceof ViewGroup) || ((ViewGroup) view).getChildCount() == 0) {
+      node.put("children", JSONObject.NULL);
+      return false;
+    }
+
+    JSONArray children = new JSONArray();
+    node.put("children", children);
+    mChildren.push(children);
+    return true;
+  }
+
+  @Override
+  public void exit(View view) {
+    mChildren.pop();
+  }
+
+  /** The dump of the whole hierarchy, once the walk is done. */
+  public JSONObject getHierarchy() {
+    return mRoot != null ? mRoot : new JSONObject();
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.layouthierarchy;
+
+import android.view.View;
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import javax.annotation.Nullable;
+import org.json.JSONArray;
+import org.json.JSONException;
+
+/**
+ * Finds the same issues as {@link AccessibilityIssuesDumper#dumpIssues} as part of a {@link
+ * ViewTreeWalker} walk. It must come after the given {@link AccessibilityTreeVisitor} in the walk.
+ *
+ * <p>The walk only captures an {@link AccessibilityNodeSnapshot} of the tree, the rules are
+ * evaluated in the background as soon as the walk leaves the root.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class AccessibilityIssuesVisitor implements ViewTreeWalker.Visitor {
+  private final AccessibilityTreeVisitor mTreeVisitor;
+  private final AccessibilityRuleEngine mEngine;
+  private final Deque<AccessibilityNodeSnapshot> mStack = new ArrayDeque<>();
+  @Nullable private AccessibilityRuleEngine.Evaluation mEvaluation;
+
+  public AccessibilityIssuesVisitor(AccessibilityTreeVisitor treeVisitor) {
+    this(treeVisitor, AccessibilityRuleEngine.create());
+  }
+
+  public AccessibilityIssuesVisitor(
+      AccessibilityTreeVisitor treeVisitor, AccessibilityRuleEngine engine) {
+    mTreeVisitor = treeVisitor;
+    mEngine = engine;
+  }
+
+  @Override
+  public boolean enter(View view) {
+    mStack.push(AccessibilityNodeSnapshot.capture(mTreeVisitor.getCurrentNode(), mStack.peek()));
+    return true;
+  }
+
+  @Override
+  public void exit(View view) {
+    AccessibilityNodeSnapshot node = mStack.pop();
+    if (mStack.isEmpty()) {
+      mEvaluation = mEngine.evaluate(node);
+    }
+  }
+
+  /** The issues found in the whole hierarchy, waiting for the rules if needed. */
+  public JSONArray getIssues() throws JSONException {
+    if (mEvaluation == null) {
+      throw new IllegalStateException("The hierarchy has not been walked yet");
+    }
+    return mEvaluation.getIssues();
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.layouthierarchy;
+
+import android.view.View;
+import androidx.core.view.accessibility.AccessibilityNodeInfoCompat;
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Creates the {@link AccessibilityNodeInfoCompat} of each view at most once, and remembers the
+ * answers to the more expensive checks of {@link AccessibilityUtil}, for as long as the views don't
+ * change (typically a single capture).
+ *
+ * <p>The cache owns the node infos it hands out: they must not be recycled by the caller, and are
+ * all recycled at once by {@link #recycle()}.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class AccessibilityNodeInfoCache {
+  private final Map<View, AccessibilityNodeInfoCompat> mNodeInfos = new IdentityHashMap<>();
+  final Map<View, Boolean> mSpeakingNodes = new IdentityHashMap<>();
+  final Map<View, Boolean> mAccessibilityFocusable = new IdentityHashMap<>();
+  final Map<View, Boolean> mFocusableAncestors = new IdentityHashMap<>();
+  final Map<View, AccessibilityUtil.AccessibilityRole> mRoles = new IdentityHashMap<>();
+
+  /** Returns the node info of the view, or null if it couldn't be created. */
+  @Nullable
+  public AccessibilityNodeInfoCompat get(@Nullable View view) {
+    if (view == null) {
+      return null;
+    }
+    if (mNodeInfos.containsKey(view)) {
+      return mNodeInfos.get(view);
+    }
+
+    AccessibilityNodeInfoCompat nodeInfo = AccessibilityUtil.createNodeInfoFromView(view);
+    // NULLSAFE_FIXME[Parameter Not Nullable]
+    mNodeInfos.put(view, nodeInfo);
+    return nodeInfo;
+  }
+
+  /** Recycles every node info handed out, and forgets everything. */
+  public void recycle() {
+    for (AccessibilityNodeInfoCompat nodeInfo : mNodeInfos.values()) {
+      if (nodeInfo != null) {
+        nodeInfo.recycle();
+      }
+    }
+    mNodeInfos.clear();
+    mSpeakingNodes.clear();
+    mAccessibilityFocusable.clear();
+    mFocusableAncestors.clear();
+    mRoles.clear();
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.layouthierarchy;
+
+import android.view.View;
+import android.view.ViewGroup;
+import androidx.core.view.accessibility.AccessibilityNodeInfoCompat;
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * An immutable copy of the accessibility properties of a view, and of its descendants, that {@link
+ * AccessibilityRule}s can safely look at from any thread.
+ *
+ * <p>Properties that need the view hierarchy to be computed, like whether Talkback would focus the
+ * view, are computed on the thread capturing the snapshot.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public final class AccessibilityNodeSnapshot {
+  private final String mClassName;
+  private final String mSimpleClassName;
+  private final int mLeft;
+  private final int mTop;
+  private final int mWidth;
+  private final int mHeight;
+  private final boolean mViewGroup;
+  private final AccessibilityUtil.AccessibilityRole mRole;
+  private final boolean mTalkbackFocusable;
+  private final boolean mSpeakingNode;
+  private final boolean mHasNodeInfo;
+  @Nullable private final String mText;
+  @Nullable private final String mContentDescription;
+  private final boolean mClickable;
+  private final boolean mLongClickable;
+  private final boolean mFocusable;
+  private final boolean mCheckable;
+  private final boolean mVisibleToUser;
+  private final boolean mImportantForAccessibility;
+  @Nullable private final AccessibilityNodeSnapshot mParent;
+  private final List<AccessibilityNodeSnapshot> mChildren = new ArrayList<>();
+
+  private AccessibilityNodeSnapshot(
+      AccessibilityUtil.AXTreeNode axTreeNode, @Nullable AccessibilityNodeSnapshot parent) {
+    View view = axTreeNode.getView();
+    AccessibilityNodeInfoCompat nodeInfo = axTreeNode.getNodeInfo();
+    AccessibilityNodeInfoCache cache = axTreeNode.getNodeInfoCache();
+
+    mClassName = view.getClass().getName();
+    mSimpleClassName = view.getClass().getSimpleName();
+    mLeft = view.getLeft();
+    mTop = view.getTop();
+    mWidth = view.getWidth();
+    mHeight = view.getHeight();
+    mViewGroup = view instanceof ViewGroup;
+    mRole = AccessibilityUtil.getRole(view, cache);
+    mTalkbackFocusable = AccessibilityUtil.isTalkbackFocusable(view, cache);
+    mSpeakingNode = AccessibilityUtil.isSpeakingNode(nodeInfo, view, cache);
+    mHasNodeInfo = nodeInfo != null;
+    mText = nodeInfo != null ? toString(nodeInfo.getText()) : null;
+    mContentDescription = nodeInfo != null ? toString(nodeInfo.getContentDescription()) : null;
+    mClickable = nodeInfo != null && nodeInfo.isClickable();
+    mLongClickable = nodeInfo != null && nodeInfo.isLongClickable();
+    mFocusable = nodeInfo != null && nodeInfo.isFocusable();
+    mCheckable = nodeInfo != null && nodeInfo.isCheckable();
+    mVisibleToUser = nodeInfo != null && nodeInfo.isVisibleToUser();
+    mImportantForAccessibility = nodeInfo != null && nodeInfo.isImportantForAccessibility();
+    mParent = parent;
+  }
+
+  /**
+   * Captures the given node of the accessibility tree, and adds it to the children of its parent.
+   * This must be called on the thread that owns the views, parents before their children.
+   */
+  static AccessibilityNodeSnapshot capture(
+      AccessibilityUtil.AXTreeNode axTreeNode, @Nullable AccessibilityNodeSnapshot parent) {
+    AccessibilityNodeSnapshot node = new AccessibilityNodeSnapshot(axTreeNode, parent);
+    if (parent != null) {
+      parent.mChildren.add(node);
+    }
+    return node;
+  }
+
+  /** Captures the whole tree. This must be called on the thread that owns the views. */
+  public static AccessibilityNodeSnapshot capture(AccessibilityUtil.AXTreeNode axTree) {
+    return captureTree(axTree, null);
+  }
+
+  private static AccessibilityNodeSnapshot captureTree(
+      AccessibilityUtil.AXTreeNode axTreeNode, @Nullable AccessibilityNodeSnapshot parent) {
+    AccessibilityNodeSnapshot node = capture(axTreeNode, parent);
+    for (AccessibilityUtil.AXTreeNode child : axTreeNode.getChildren()) {
+      captureTree(child, node);
+    }
+    return node;
+  }
+
+  /** Returns this node and all its descendants, depth first. */
+  public List<AccessibilityNodeSnapshot> getAllNodes() {
+    List<AccessibilityNodeSnapshot> nodes = new ArrayList<>();
+    addAllNodes(nodes);
+    return nodes;
+  }
+
+  private void addAllNodes(List<AccessibilityNodeSnapshot> nodes) {
+    nodes.add(this);
+    for (AccessibilityNodeSnapshot child : mChildren) {
+      child.addAllNodes(nodes);
+    }
+  }
+
+  @Nullable
+  private static String toString(@Nullable CharSequence charSequence) {
+    return charSequence == null ? null : charSequence.toString();
+  }
+
+  public String getClassName() {
+    return mClassName;
+  }
+
+  public String getSimpleClassName() {
+    return mSimpleClassName;
+  }
+
+  public int getLeft() {
+    return mLeft;
+  }
+
+  public int getTop() {
+    return mTop;
+  }
+
+  public int getWidth() {
+    return mWidth;
+  }
+
+  public int getHeight() {
+    return mHeight;
+  }
+
+  public boolean isViewGroup() {
+    return mViewGroup;
+  }
+
+  public AccessibilityUtil.AccessibilityRole getRole() {
+    return mRole;
+  }
+
+  /** See {@link AccessibilityUtil#isTalkbackFocusable(View)} */
+  public boolean isTalkbackFocusable() {
+    return mTalkbackFocusable;
+  }
+
+  /** See {@link AccessibilityUtil#isSpeakingNode(AccessibilityNodeInfoCompat, View)} */
+  public boolean isSpeakingNode() {
+    return mSpeakingNode;
+  }
+
+  /** Whether the node info of the view could be created. If not, all its properties are unset. */
+  public boolean hasNodeInfo() {
+    return mHasNodeInfo;
+  }
+
+  @Nullable
+  public String getText() {
+    return mText;
+  }
+
+  @Nullable
+  public String getContentDescription() {
+    return mContentDescription;
+  }
+
+  public boolean isClickable() {
+    return mClickable;
+  }
+
+  public boolean isLongClickable() {
+    return mLongClickable;
+  }
+
+  public boolean isFocusable() {
+    return mFocusable;
+  }
+
+  public boolean isCheckable() {
+    return mCheckable;
+  }
+
+  public boolean isVisibleToUser() {
+    return mVisibleToUser;
+  }
+
+  public boolean isImportantForAccessibility() {
+    return mImportantForAccessibility;
+  }
+
+  @Nullable
+  public AccessibilityNodeSnapshot getParent() {
+    return mParent;
+  }
+
+  public List<AccessibilityNodeSnapshot> getChildren() {
+    return Collections.unmodifiableList(mChildren);
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.layouthierarchy;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * An accessibility check, run against every node of the hierarchy of each screenshot. Violations
+ * are reported in the {@code _issues.json} file of the screenshot.
+ *
+ * <p>Rules are registered with {@link AccessibilityRuleEngine#addGlobalRule} and evaluated on a
+ * background thread, against an {@link AccessibilityNodeSnapshot} of the hierarchy. They must not
+ * touch any view, and may be evaluated concurrently with each other.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public interface AccessibilityRule {
+
+  /** A unique, stable identifier of the rule */
+  String getId();
+
+  /** A human readable name of the rule */
+  String getName();
+
+  /** A human readable description of what the rule checks */
+  String getDescription();
+
+  /**
+   * Checks a single node of the hierarchy.
+   *
+   * @return null if the node complies with the rule, otherwise the suggestions to fix it.
+   */
+  @Nullable
+  List<String> check(AccessibilityNodeSnapshot node);
+}
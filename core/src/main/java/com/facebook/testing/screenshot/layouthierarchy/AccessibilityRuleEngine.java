@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.layouthierarchy;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Evaluates {@link AccessibilityRule}s against an {@link AccessibilityNodeSnapshot} of a
+ * hierarchy. Each rule is evaluated on a worker thread, so evaluating the rules of a screenshot
+ * overlaps with each other and with whatever the caller does in the meantime.
+ *
+ * <p>The built-in rules always come first, followed by the rules registered with {@link
+ * #addGlobalRule} in the order they were added.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public final class AccessibilityRuleEngine {
+  private static final List<AccessibilityRule> sGlobalRules = new ArrayList<>();
+
+  @Nullable private static ExecutorService sExecutor;
+
+  private final List<AccessibilityRule> mRules;
+
+  private AccessibilityRuleEngine(List<AccessibilityRule> rules) {
+    mRules = rules;
+  }
+
+  public static synchronized void addGlobalRule(AccessibilityRule rule) {
+    sGlobalRules.add(rule);
+  }
+
+  public static synchronized void removeGlobalRule(AccessibilityRule rule) {
+    sGlobalRules.remove(rule);
+  }
+
+  /** An engine with the built-in rules and the global rules registered right now. */
+  public static AccessibilityRuleEngine create() {
+    return createWith(Collections.<AccessibilityRule>emptyList());
+  }
+
+  public static AccessibilityRuleEngine createWith(List<AccessibilityRule> rules) {
+    List<AccessibilityRule> allRules = new ArrayList<>();
+    allRules.add(TalkbackFocusableWithoutSpokenFeedbackRule.getInstance());
+    allRules.addAll(rules);
+    synchronized (AccessibilityRuleEngine.class) {
+      allRules.addAll(sGlobalRules);
+    }
+    return createWithOnly(allRules);
+  }
+
+  public static AccessibilityRuleEngine createWithOnly(List<AccessibilityRule> rules) {
+    return new AccessibilityRuleEngine(
+        Collections.unmodifiableList(new ArrayList<AccessibilityRule>(rules)));
+  }
+
+  public List<AccessibilityRule> getRules() {
+    return mRules;
+  }
+
+  /**
+   * Starts evaluating every rule against every node of the given tree, and returns right away.
+   * The snapshot is only read, so it may be shared with other evaluations.
+   */
+  public Evaluation evaluate(AccessibilityNodeSnapshot root) {
+    final List<AccessibilityNodeSnapshot> nodes =
+        Collections.unmodifiableList(root.getAllNodes());
+    ExecutorService executor = getExecutor();
+    List<Future<JSONArray>> results = new ArrayList<>(mRules.size());
+    for (final AccessibilityRule rule : mRules) {
+      results.add(
+          executor.submit(
+              new Callable<JSONArray>() {
+                @Override
+                public JSONArray call() throws JSONException {
+                  return check(rule, nodes);
+                }
+              }));
+    }
+    return new Evaluation(mRules, results);
+  }
+
+  private static JSONArray check(AccessibilityRule rule, List<AccessibilityNodeSnapshot> nodes)
+      throws JSONException {
+    JSONArray elements = new JSONArray();
+    for (AccessibilityNodeSnapshot node : nodes) {
+      List<String> suggestions = rule.check(node);
+      if (suggestions != null) {
+        elements.put(dumpElement(node, suggestions));
+      }
+    }
+    return elements;
+  }
+
+  private static JSONObject dumpElement(AccessibilityNodeSnapshot node, List<String> suggestions)
+      throws JSONException {
+    JSONObject element = new JSONObject();
+    element.put("name", node.getSimpleClassName());
+    element.put("class", node.getClassName());
+    JSONObject elementPos = new JSONObject();
+    elementPos.put("left", node.getLeft());
+    elementPos.put("top", node.getTop());
+    elementPos.put("width", node.getWidth());
+    elementPos.put("height", node.getHeight());
+    element.put("position", elementPos);
+    JSONArray suggestionsJson = new JSONArray();
+    for (String suggestion : suggestions) {
+      suggestionsJson.put(suggestion);
+    }
+    element.put("suggestions", suggestionsJson);
+    return element;
+  }
+
+  private static synchronized ExecutorService getExecutor() {
+    if (sExecutor == null) {
+      final AtomicInteger threadCount = new AtomicInteger();
+      sExecutor =
+          Executors.newFixedThreadPool(
+              Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+              new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                  Thread thread =
+                      new Thread(
+                          runnable, "screenshot-accessibility-" + threadCount.getAndIncrement());
+                  thread.setDaemon(true);
+                  return thread;
+                }
+              });
+    }
+    return sExecutor;
+  }
+
+  /** The pending result of {@link #evaluate}. */
+  public static final class Evaluation {
+    private final List<AccessibilityRule> mRules;
+    private final List<Future<JSONArray>> mResults;
+
+    private Evaluation(List<AccessibilityRule> rules, List<Future<JSONArray>> results) {
+      mRules = rules;
+      mResults = results;
+    }
+
+    /**
+     * Waits for every rule to be evaluated, and returns one entry per violated rule, in the order
+     * of the rules.
+     */
+    public JSONArray getIssues() throws JSONException {
+      JSONArray root = new JSONArray();
+      for (int i = 0; i < mRules.size(); i++) {
+        JSONArray elements = getResult(mResults.get(i));
+        if (elements.length() == 0) {
+          continue;
+        }
+
+        AccessibilityRule rule = mRules.get(i);
+        JSONObject evaluation = new JSONObject();
+        evaluation.put("id", rule.getId());
+        evaluation.put("name", rule.getName());
+        evaluation.put("description", rule.getDescription());
+        evaluation.put("elements", elements);
+        root.put(evaluation);
+      }
+      return root;
+    }
+
+    private static JSONArray getResult(Future<JSONArray> result) {
+      try {
+        return result.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      } catch (ExecutionException e) {
+        throw new RuntimeException(e.getCause());
+      }
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.layouthierarchy;
+
+import android.view.View;
+import com.facebook.infer.annotation.Nullsafe;
+import com.google.common.base.Preconditions;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import javax.annotation.Nullable;
+
+/**
+ * Builds the same tree as {@link AccessibilityUtil#generateAccessibilityTree} as part of a {@link
+ * ViewTreeWalker} walk. Visitors that come after this one in the walk can look at the node of the
+ * view being visited with {@link #getCurrentNode()}.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class AccessibilityTreeVisitor implements ViewTreeWalker.Visitor {
+  private final Deque<AccessibilityUtil.AXTreeNode> mStack = new ArrayDeque<>();
+  @Nullable private AccessibilityUtil.AXTreeNode mRoot;
+
+  @Override
+  public boolean enter(View view) {
+    AccessibilityUtil.AXTreeNode parent = mStack.peek();
+    AccessibilityUtil.AXTreeNode node = new AccessibilityUtil.AXTreeNode(view, parent);
+    if (parent == null) {
+      mRoot = node;
+    } else {
+      parent.addChild(node);
+    }
+    mStack.push(node);
+    return true;
+  }
+
+  @Override
+  public void exit(View view) {
+    mStack.pop();
+  }
+
+  /** The node of the view currently being visited. */
+  public AccessibilityUtil.AXTreeNode getCurrentNode() {
+    return Preconditions.checkNotNull(mStack.peek());
+  }
+
+  /** The root of the tree, once the walk is done. */
+  public AccessibilityUtil.AXTreeNode getTree() {
+    return Preconditions.checkNotNull(mRoot);
+  }
+
+  /** Recycles the node infos of the tree, if any was built. */
+  public void recycle() {
+    if (mRoot != null) {
+      mRoot.recycle();
+    }
+  }
+}
@@ -117,13 +117,22 @@ public class AccessibilityUtil {
    * @return {@code AccessibilityRole} the defined role.
    */
   public static AccessibilityRole getRole(View view) {
-    AccessibilityNodeInfoCompat nodeInfo = createNodeInfoFromView(view);
-    if (nodeInfo == null) {
-      return AccessibilityRole.NONE;
+    AccessibilityNodeInfoCache cache = new AccessibilityNodeInfoCache();
+    try {
+      return getRole(view, cache);
+    } finally {
+      cache.recycle();
     }
+  }
 
-    AccessibilityRole role = getRole(nodeInfo);
-    nodeInfo.recycle();
+  /** Same as {@link #getRole(View)}, but using the given cache. */
+  public static AccessibilityRole getRole(View view, AccessibilityNodeInfoCache cache) {
+    AccessibilityRole role = cache.mRoles.get(view);
+    if (role == null) {
+      AccessibilityNodeInfoCompat nodeInfo = cache.get(view);
+      role = nodeInfo == null ? AccessibilityRole.NONE : getRole(nodeInfo);
+      cache.mRoles.put(view, role);
+    }
     return role;
   }
 
@@ -157,7 +166,7 @@ public class AccessibilityUtil {
   }
 
   @Nullable
-  private static AccessibilityNodeInfoCompat createNodeInfoFromView(@Nullable View view) {
+  static AccessibilityNodeInfoCompat createNodeInfoFromView(@Nullable View view) {
     return createNodeInfoFromView(view, NODE_INFO_CREATION_RETRY_COUNT);
   }
 
@@ -227,17 +236,42 @@ public class AccessibilityUtil {
    */
   public static boolean isSpeakingNode(
       @Nullable AccessibilityNodeInfoCompat node, @Nullable View view) {
+    AccessibilityNodeInfoCache cache = new AccessibilityNodeInfoCache();
+    try {
+      return isSpeakingNode(node, view, cache);
+    } finally {
+      cache.recycle();
+    }
+  }
+
+  /** Same as {@link #isSpeakingNode(AccessibilityNodeInfoCompat, View)}, using the given cache. */
+  public static boolean isSpeakingNode(
+      @Nullable AccessibilityNodeInfoCompat node,
+      @Nullable View view,
+      AccessibilityNodeInfoCache cache) {
     if (node == null || view == null) {
       return false;
     }
 
+    Boolean speaking = cache.mSpeakingNodes.get(view);
+    if (speaking == null) {
+      speaking = computeIsSpeakingNode(node, view, cache);
+      cache.mSpeakingNodes.put(view, speaking);
+    }
+    return speaking;
+  }
+
+  private static boolean computeIsSpeakingNode(
+      AccessibilityNodeInfoCompat node, View view, AccessibilityNodeInfoCache cache) {
     final int important = ViewCompat.getImportantForAccessibility(view);
     if (important == ViewCompat.IMPORTANT_FOR_ACCESSIBILITY_NO_HIDE_DESCENDANTS
         || (important == ViewCompat.IMPORTANT_FOR_ACCESSIBILITY_NO && node.getChildCount() <= 0)) {
       return false;
     }
 
-    return node.isCheckable() || hasText(node) || hasNonActionableSpeakingDescendants(node, view);
+    return node.isCheckable()
+        || hasText(node)
+        || hasNonActionableSpeakingDescendants(node, view, cache);
   }
 
   /**
@@ -254,7 +288,22 @@ public class AccessibilityUtil {
    */
   public static boolean hasNonActionableSpeakingDescendants(
       @Nullable AccessibilityNodeInfoCompat node, @Nullable View view) {
+    AccessibilityNodeInfoCache cache = new AccessibilityNodeInfoCache();
+    try {
+      return hasNonActionableSpeakingDescendants(node, view, cache);
+    } finally {
+      cache.recycle();
+    }
+  }
 
+  /**
+   * Same as {@link #hasNonActionableSpeakingDescendants(AccessibilityNodeInfoCompat, View)}, using
+   * the given cache.
+   */
+  public static boolean hasNonActionableSpeakingDescendants(
+      @Nullable AccessibilityNodeInfoCompat node,
+      @Nullable View view,
+      AccessibilityNodeInfoCache cache) {
     if (node == null || view == null || !(view instanceof ViewGroup)) {
       return false;
     }
@@ -267,27 +316,21 @@ public class AccessibilityUtil {
         continue;
       }
 
-      final AccessibilityNodeInfoCompat childNode = createNodeInfoFromView(childView);
-      try {
-        if (childNode == null) {
-          continue;
-        }
+      final AccessibilityNodeInfoCompat childNode = cache.get(childView);
+      if (childNode == null) {
+        continue;
+      }
 
-        if (!childNode.isVisibleToUser()) {
-          continue;
-        }
+      if (!childNode.isVisibleToUser()) {
+        continue;
+      }
 
-        if (isAccessibilityFocusable(childNode, childView)) {
-          continue;
-        }
+      if (isAccessibilityFocusable(childNode, childView, cache)) {
+        continue;
+      }
 
-        if (isSpeakingNode(childNode, childView)) {
-          return true;
-        }
-      } finally {
-        if (childNode != null) {
-          childNode.recycle();
-        }
+      if (isSpeakingNode(childNode, childView, cache)) {
+        return true;
       }
     }
 
@@ -308,10 +351,36 @@ public class AccessibilityUtil {
    */
   public static boolean isAccessibilityFocusable(
       @Nullable AccessibilityNodeInfoCompat node, @Nullable View view) {
+    AccessibilityNodeInfoCache cache = new AccessibilityNodeInfoCache();
+    try {
+      return isAccessibilityFocusable(node, view, cache);
+    } finally {
+      cache.recycle();
+    }
+  }
+
+  /**
+   * Same as {@link #isAccessibilityFocusable(AccessibilityNodeInfoCompat, View)}, using the given
+   * cache.
+   */
+  public static boolean isAccessibilityFocusable(
+      @Nullable AccessibilityNodeInfoCompat node,
+      @Nullable View view,
+      AccessibilityNodeInfoCache cache) {
     if (node == null || view == null) {
       return false;
     }
 
+    Boolean focusable = cache.mAccessibilityFocusable.get(view);
+    if (focusable == null) {
+      focusable = computeIsAccessibilityFocusable(node, view, cache);
+      cache.mAccessibilityFocusable.put(view, focusable);
+    }
+    return focusable;
+  }
+
+  private static boolean computeIsAccessibilityFocusable(
+      AccessibilityNodeInfoCompat node, View view, AccessibilityNodeInfoCache cache) {
     // Never focus invisible nodes.
     if (!node.isVisibleToUser()) {
       return false;
@@ -323,7 +392,7 @@ public class AccessibilityUtil {
     }
 
     // only focus top-level list items with non-actionable speaking children.
-    return isTopLevelScrollItem(node, view) && isSpeakingNode(node, view);
+    return isTopLevelScrollItem(node, view, cache) && isSpeakingNode(node, view, cache);
   }
 
   /**
@@ -336,6 +405,22 @@ public class AccessibilityUtil {
    */
   public static boolean isTopLevelScrollItem(
       @Nullable AccessibilityNodeInfoCompat node, @Nullable View view) {
+    AccessibilityNodeInfoCache cache = new AccessibilityNodeInfoCache();
+    try {
+      return isTopLevelScrollItem(node, view, cache);
+    } finally {
+      cache.recycle();
+    }
+  }
+
+  /**
+   * Same as {@link #isTopLevelScrollItem(AccessibilityNodeInfoCompat, View)}, using the given
+   * cache.
+   */
+  public static boolean isTopLevelScrollItem(
+      @Nullable AccessibilityNodeInfoCompat node,
+      @Nullable View view,
+      AccessibilityNodeInfoCache cache) {
     if (node == null || view == null) {
       return false;
     }
@@ -359,11 +444,11 @@ public class AccessibilityUtil {
     // Top-level items in a scrolling pager are actually two levels down since the first
     // level items in pagers are the pages themselves.
     View grandparent = (View) ViewCompat.getParentForAccessibility(parent);
-    if (grandparent != null && getRole(grandparent) == AccessibilityRole.PAGER) {
+    if (grandparent != null && getRole(grandparent, cache) == AccessibilityRole.PAGER) {
       return true;
     }
 
-    AccessibilityRole parentRole = getRole(parent);
+    AccessibilityRole parentRole = getRole(parent, cache);
     return parentRole == AccessibilityRole.LIST
         || parentRole == AccessibilityRole.GRID
         || parentRole == AccessibilityRole.SCROLL_VIEW
@@ -403,39 +488,52 @@ public class AccessibilityUtil {
    */
   public static boolean hasFocusableAncestor(
       @Nullable AccessibilityNodeInfoCompat node, @Nullable View view) {
+    AccessibilityNodeInfoCache cache = new AccessibilityNodeInfoCache();
+    try {
+      return hasFocusableAncestor(node, view, cache);
+    } finally {
+      cache.recycle();
+    }
+  }
+
+  /**
+   * Same as {@link #hasFocusableAncestor(AccessibilityNodeInfoCompat, View)}, using the given
+   * cache.
+   */
+  public static boolean hasFocusableAncestor(
+      @Nullable AccessibilityNodeInfoCompat node,
+      @Nullable View view,
+      AccessibilityNodeInfoCache cache) {
     if (node == null || view == null) {
       return false;
     }
 
+    Boolean focusableAncestor = cache.mFocusableAncestors.get(view);
+    if (focusableAncestor == null) {
+      focusableAncestor = computeHasFocusableAncestor(view, cache);
+      cache.mFocusableAncestors.put(view, focusableAncestor);
+    }
+    return focusableAncestor;
+  }
+
+  private static boolean computeHasFocusableAncestor(View view, AccessibilityNodeInfoCache cache) {
     final ViewParent parentView = ViewCompat.getParentForAccessibility(view);
     if (!(parentView instanceof View)) {
       return false;
     }
 
-    final AccessibilityNodeInfoCompat parentNode = createNodeInfoFromView((View) parentView);
-    try {
-      if (parentNode == null) {
-        return false;
-      }
-
-      if (areBoundsIdenticalToWindow(parentNode, (View) parentView)
-          && parentNode.getChildCount() > 0) {
-        return false;
-      }
-
-      if (isAccessibilityFocusable(parentNode, (View) parentView)) {
-        return true;
-      }
+    final AccessibilityNodeInfoCompat parentNode = cache.get((View) parentView);
+    if (parentNode == null) {
+      return false;
+    }
 
-      if (hasFocusableAncestor(parentNode, (View) parentView)) {
-        return true;
-      }
-    } finally {
-      if (parentNode != null) {
-        parentNode.recycle();
-      }
+    if (areBoundsIdenticalToWindow(parentNode, (View) parentView)
+        && parentNode.getChildCount() > 0) {
+      return false;
     }
-    return false;
+
+    return isAccessibilityFocusable(parentNode, (View) parentView, cache)
+        || hasFocusableAncestor(parentNode, (View) parentView, cache);
   }
 
   /**
@@ -480,6 +578,16 @@ public class AccessibilityUtil {
    * @return {@code true} if node has any visible children
    */
   public static boolean hasVisibleChildren(View view) {
+    AccessibilityNodeInfoCache cache = new AccessibilityNodeInfoCache();
+    try {
+      return hasVisibleChildren(view, cache);
+    } finally {
+      cache.recycle();
+    }
+  }
+
+  /** Same as {@link #hasVisibleChildren(View)}, using the given cache. */
+  public static boolean hasVisibleChildren(View view, AccessibilityNodeInfoCache cache) {
     if (!(view instanceof ViewGroup)) {
       return false;
     }
@@ -487,15 +595,9 @@ public class AccessibilityUtil {
     ViewGroup viewGroup = (ViewGroup) view;
     int childCount = viewGroup.getChildCount();
     for (int i = 0; i < childCount; ++i) {
-      AccessibilityNodeInfoCompat childNodeInfo = createNodeInfoFromView(viewGroup.getChildAt(i));
-      if (childNodeInfo != null) {
-        try {
-          if (childNodeInfo.isVisibleToUser()) {
-            return true;
-          }
-        } finally {
-          childNodeInfo.recycle();
-        }
+      AccessibilityNodeInfoCompat childNodeInfo = cache.get(viewGroup.getChildAt(i));
+      if (childNodeInfo != null && childNodeInfo.isVisibleToUser()) {
+        return true;
       }
     }
 
@@ -509,6 +611,16 @@ public class AccessibilityUtil {
    * @return {@code boolean} if the view will be ignored by TalkBack.
    */
   public static boolean isTalkbackFocusable(View view) {
+    AccessibilityNodeInfoCache cache = new AccessibilityNodeInfoCache();
+    try {
+      return isTalkbackFocusable(view, cache);
+    } finally {
+      cache.recycle();
+    }
+  }
+
+  /** Same as {@link #isTalkbackFocusable(View)}, using the given cache. */
+  public static boolean isTalkbackFocusable(View view, AccessibilityNodeInfoCache cache) {
     if (view == null) {
       return false;
     }
@@ -535,7 +647,7 @@ public class AccessibilityUtil {
     // will not be focusable.
     AccessibilityNodeInfoCompat node;
     try {
-      node = createNodeInfoFromView(view);
+      node = cache.get(view);
     } catch (IllegalArgumentException e) {
       return false;
     }
@@ -549,38 +661,34 @@ public class AccessibilityUtil {
       return false;
     }
 
-    try {
-      if (!node.isVisibleToUser()) {
-        return false;
-      }
-
-      if (isAccessibilityFocusable(node, view)) {
-        if (!hasVisibleChildren(view)) {
-          // Leaves that are accessibility focusable are never ignored, even if they don't have a
-          // speakable description
-          return true;
-        } else if (isSpeakingNode(node, view)) {
-          // Node is focusable and has something to speak
-          return true;
-        }
-
-        // Node is focusable and has nothing to speak
-        return false;
-      }
-
-      // if view is not accessibility focusable, it needs to have text and no focusable ancestors.
-      if (!hasText(node)) {
-        return false;
-      }
+    if (!node.isVisibleToUser()) {
+      return false;
+    }
 
-      if (!hasFocusableAncestor(node, view)) {
+    if (isAccessibilityFocusable(node, view, cache)) {
+      if (!hasVisibleChildren(view, cache)) {
+        // Leaves that are accessibility focusable are never ignored, even if they don't have a
+        // speakable description
+        return true;
+      } else if (isSpeakingNode(node, view, cache)) {
+        // Node is focusable and has something to speak
         return true;
       }
 
+      // Node is focusable and has nothing to speak
+      return false;
+    }
+
+    // if view is not accessibility focusable, it needs to have text and no focusable ancestors.
+    if (!hasText(node)) {
       return false;
-    } finally {
-      node.recycle();
     }
+
+    if (!hasFocusableAncestor(node, view, cache)) {
+      return true;
+    }
+
+    return false;
   }
 
   public static AXTreeNode generateAccessibilityTree(View view, @Nullable AXTreeNode parent) {
@@ -597,16 +705,23 @@ public class AccessibilityUtil {
     return axTree;
   }
 
+  /**
+   * A node of the accessibility tree. The node infos of the whole tree, and of any view looked at
+   * while checking it, are owned by the {@link AccessibilityNodeInfoCache} of the root, and are
+   * only recycled by {@link #recycle()}.
+   */
   public static class AXTreeNode {
     private final View mView;
     private final @Nullable AccessibilityNodeInfoCompat mNodeInfo;
     private final List<AXTreeNode> mChildren = new ArrayList<>();
     private final @Nullable AXTreeNode mParent;
+    private final AccessibilityNodeInfoCache mNodeInfoCache;
 
     public AXTreeNode(View view, @Nullable AXTreeNode parent) {
       mView = view;
-      mNodeInfo = createNodeInfoFromView(view);
       mParent = parent;
+      mNodeInfoCache = parent != null ? parent.mNodeInfoCache : new AccessibilityNodeInfoCache();
+      mNodeInfo = mNodeInfoCache.get(view);
     }
 
     public View getView() {
@@ -633,6 +748,16 @@ public class AccessibilityUtil {
       return mParent;
     }
 
+    /** The cache shared by every node of this tree. */
+    public AccessibilityNodeInfoCache getNodeInfoCache() {
+      return mNodeInfoCache;
+    }
+
+    /** Recycles the node infos of the whole tree this node belongs to. */
+    public void recycle() {
+      mNodeInfoCache.recycle();
+    }
+
     public List<AXTreeNode> getAllNodes() {
       List<AXTreeNode> nodes = new ArrayList<>();
       addAllNodes(nodes);
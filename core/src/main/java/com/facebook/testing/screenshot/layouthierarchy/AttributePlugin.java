@@ -33,7 +33,10 @@ public interface AttributePlugin {
   String KEY_WIDTH = "width";
   String KEY_HEIGHT = "height";
 
-  /** Determines whether this plugin operates on the given type */
+  /**
+   * Determines whether this plugin operates on the given type. The answer is reused for every
+   * object of the same class, unless the plugin is an {@link InstanceDependentPlugin}.
+   */
   boolean accept(Object obj);
 
   /** Returns the namespace of the attributes this plugin inserts */
@@ -17,15 +17,17 @@
 package com.facebook.testing.screenshot.layouthierarchy;
 
 import android.graphics.Point;
+import android.util.JsonWriter;
 import android.view.View;
 import android.view.ViewGroup;
 import com.facebook.infer.annotation.Nullsafe;
+import java.io.IOException;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 @Nullsafe(Nullsafe.Mode.LOCAL)
-public class BaseViewHierarchyPlugin implements HierarchyPlugin {
+public class BaseViewHierarchyPlugin implements StreamingHierarchyPlugin {
   private static final BaseViewHierarchyPlugin INSTANCE = new BaseViewHierarchyPlugin();
 
   public static BaseViewHierarchyPlugin getInstance() {
@@ -62,4 +64,27 @@ public class BaseViewHierarchyPlugin implements HierarchyPlugin {
     root.put(KEY_CHILDREN, children);
     offset.offset(-offsetLeft, -offsetTop);
   }
+
+  @Override
+  public void writeHierarchy(
+      LayoutHierarchyDumper dumper, JsonWriter writer, Object view, Point offset)
+      throws IOException, JSONException {
+    if (!(view instanceof ViewGroup)) {
+      return;
+    }
+
+    ViewGroup group = (ViewGroup) view;
+    final int offsetLeft = LayoutHierarchyDumper.getViewLeft(group);
+    final int offsetTop = LayoutHierarchyDumper.getViewTop(group);
+    offset.offset(offsetLeft, offsetTop);
+
+    writer.name(KEY_CHILDREN);
+    writer.beginArray();
+    for (int i = 0, size = group.getChildCount(); i < size; ++i) {
+      dumper.dumpHierarchy(group.getChildAt(i), offset, writer);
+    }
+    writer.endArray();
+
+    offset.offset(-offsetLeft, -offsetTop);
+  }
 }
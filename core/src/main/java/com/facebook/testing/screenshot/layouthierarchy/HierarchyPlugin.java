@@ -30,7 +30,10 @@ import org.json.JSONObject;
 public interface HierarchyPlugin {
   String KEY_CHILDREN = "children";
 
-  /** Determines whether this plugin operates on the given type */
+  /**
+   * Determines whether this plugin operates on the given type. The answer is reused for every
+   * object of the same class, unless the plugin is an {@link InstanceDependentPlugin}.
+   */
   boolean accept(Object obj);
 
   /** Constructs the hierarchy of the given type into a {@link org.json.JSONObject} */
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.layouthierarchy;
+
+import com.facebook.infer.annotation.Nullsafe;
+
+/**
+ * Marks an {@link AttributePlugin} or {@link HierarchyPlugin} whose {@code accept()} depends on the
+ * object itself rather than only on its class.
+ *
+ * <p>{@link LayoutHierarchyDumper} otherwise asks each plugin only once per class whether it
+ * accepts it, and reuses the answer for every other object of that class.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public interface InstanceDependentPlugin {}
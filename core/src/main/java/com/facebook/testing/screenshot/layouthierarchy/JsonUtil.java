@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.layouthierarchy;
+
+import android.util.JsonWriter;
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.IOException;
+import java.util.Iterator;
+import javax.annotation.Nullable;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Helpers to write {@link org.json} values to a {@link JsonWriter}
+ *
+ * <p>The result is the same JSON as {@link JSONObject#toString(int)} would give, but not always
+ * byte for byte: the two escape some characters and format some numbers differently.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public final class JsonUtil {
+
+  private JsonUtil() {}
+
+  /** Writes the given value, which can be anything that can be put in a {@link JSONObject}. */
+  public static void writeValue(JsonWriter writer, @Nullable Object value) throws IOException {
+    if (value == null || value == JSONObject.NULL) {
+      writer.nullValue();
+    } else if (value instanceof JSONObject) {
+      writer.beginObject();
+      writeMembers(writer, (JSONObject) value);
+      writer.endObject();
+    } else if (value instanceof JSONArray) {
+      JSONArray array = (JSONArray) value;
+      writer.beginArray();
+      for (int i = 0, length = array.length(); i < length; i++) {
+        writeValue(writer, array.opt(i));
+      }
+      writer.endArray();
+    } else if (value instanceof Boolean) {
+      writer.value((Boolean) value);
+    } else if (value instanceof Number) {
+      writer.value((Number) value);
+    } else {
+      writer.value(value.toString());
+    }
+  }
+
+  /** Writes the members of the object into the object the writer is currently in. */
+  public static void writeMembers(JsonWriter writer, JSONObject object) throws IOException {
+    Iterator<String> keys = object.keys();
+    while (keys.hasNext()) {
+      String key = keys.next();
+      writer.name(key);
+      writeValue(writer, object.opt(key));
+    }
+  }
+}
@@ -17,11 +17,15 @@
 package com.facebook.testing.screenshot.layouthierarchy;
 
 import android.graphics.Point;
+import android.util.JsonWriter;
 import android.view.View;
 import com.facebook.infer.annotation.Nullsafe;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -34,6 +38,18 @@ public final class LayoutHierarchyDumper {
   private final List<AttributePlugin> mAttributePlugins = new ArrayList<>();
   private final List<HierarchyPlugin> mHierarchyPlugins = new ArrayList<>();
 
+  /**
+   * The attribute plugins that accept each class, in order. Instance dependent plugins are always
+   * included and asked again for every object.
+   */
+  private final Map<Class<?>, AttributePlugin[]> mAttributePluginsByClass = new HashMap<>();
+
+  /**
+   * The hierarchy plugins to try for each class, in order. This ends with the first plugin that
+   * accepts the class, preceded by any instance dependent plugins that come before it.
+   */
+  private final Map<Class<?>, HierarchyPlugin[]> mHierarchyPluginsByClass = new HashMap<>();
+
   public static void addGlobalAttributePlugin(AttributePlugin plugin) {
     sGlobalAttributePlugins.add(plugin);
   }
@@ -89,8 +105,8 @@ public final class LayoutHierarchyDumper {
 
   public JSONObject dumpAttributes(Object obj, Point offset) throws JSONException {
     JSONObject node = new JSONObject();
-    for (AttributePlugin plugin : mAttributePlugins) {
-      if (plugin.accept(obj)) {
+    for (AttributePlugin plugin : findAttributePlugins(obj)) {
+      if (!(plugin instanceof InstanceDependentPlugin) || plugin.accept(obj)) {
         plugin.putAttributes(node, obj, offset);
       }
     }
@@ -104,11 +120,76 @@ public final class LayoutHierarchyDumper {
 
   public JSONObject dumpHierarchy(Object obj, Point offset) throws JSONException {
     JSONObject node = dumpAttributes(obj, offset);
-    for (HierarchyPlugin plugin : mHierarchyPlugins) {
-      if (plugin.accept(obj)) {
+    findHierarchyPlugin(obj).putHierarchy(this, node, obj, offset);
+    return node;
+  }
+
+  /** Same as {@link #dumpHierarchy(View)}, but streams the hierarchy into the given writer. */
+  public void dumpHierarchy(View view, JsonWriter writer) throws IOException, JSONException {
+    Point offset = new Point(-getViewLeft(view), -getViewTop(view));
+    dumpHierarchy(view, offset, writer);
+  }
+
+  /**
+   * Same as {@link #dumpHierarchy(Object, Point)}, but streams the hierarchy into the given writer.
+   * Only the attributes of a single node are held in memory at a time, as long as the hierarchy
+   * plugins are {@link StreamingHierarchyPlugin}s.
+   */
+  public void dumpHierarchy(Object obj, Point offset, JsonWriter writer)
+      throws IOException, JSONException {
+    writeHierarchy(findHierarchyPlugin(obj), dumpAttributes(obj, offset), obj, offset, writer);
+  }
+
+  /** Writes the node with the given attributes, and its hierarchy as put by the given plugin. */
+  void writeHierarchy(
+      HierarchyPlugin plugin, JSONObject node, Object obj, Point offset, JsonWriter writer)
+      throws IOException, JSONException {
+    if (plugin instanceof StreamingHierarchyPlugin) {
+      writer.beginObject();
+      JsonUtil.writeMembers(writer, node);
+      ((StreamingHierarchyPlugin) plugin).writeHierarchy(this, writer, obj, offset);
+      writer.endObject();
+    } else {
+      plugin.putHierarchy(this, node, obj, offset);
+      JsonUtil.writeValue(writer, node);
+    }
+  }
+
+  private AttributePlugin[] findAttributePlugins(Object obj) {
+    AttributePlugin[] plugins = mAttributePluginsByClass.get(obj.getClass());
+    if (plugins == null) {
+      List<AttributePlugin> accepted = new ArrayList<>();
+      for (AttributePlugin plugin : mAttributePlugins) {
+        if (plugin instanceof InstanceDependentPlugin || plugin.accept(obj)) {
+          accepted.add(plugin);
+        }
+      }
+      plugins = accepted.toArray(new AttributePlugin[accepted.size()]);
+      mAttributePluginsByClass.put(obj.getClass(), plugins);
+    }
+    return plugins;
+  }
+
+  HierarchyPlugin findHierarchyPlugin(Object obj) {
+    HierarchyPlugin[] candidates = mHierarchyPluginsByClass.get(obj.getClass());
+    if (candidates == null) {
+      List<HierarchyPlugin> accepted = new ArrayList<>();
+      for (HierarchyPlugin plugin : mHierarchyPlugins) {
+        if (plugin instanceof InstanceDependentPlugin) {
+          accepted.add(plugin);
+        } else if (plugin.accept(obj)) {
+          accepted.add(plugin);
+          break;
+        }
+      }
+      candidates = accepted.toArray(new HierarchyPlugin[accepted.size()]);
+      mHierarchyPluginsByClass.put(obj.getClass(), candidates);
+    }
+
+    for (HierarchyPlugin plugin : candidates) {
+      if (!(plugin instanceof InstanceDependentPlugin) || plugin.accept(obj)) {
         // First hierarchy wins
-        plugin.putHierarchy(this, node, obj, offset);
-        return node;
+        return plugin;
       }
     }
     throw new IllegalStateException(
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.layouthierarchy;
+
+import android.graphics.Point;
+import android.util.JsonWriter;
+import android.view.View;
+import android.view.ViewGroup;
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.IOException;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Streams the same dump as {@link LayoutHierarchyDumper#dumpHierarchy(View, JsonWriter)} as part of
+ * a {@link ViewTreeWalker} walk.
+ *
+ * <p>Views whose hierarchy is handled by a plugin other than {@link BaseViewHierarchyPlugin} (e.g.
+ * a Litho view) are dumped by that plugin as a whole, and the walk doesn't descend into them for
+ * this visitor.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class LayoutHierarchyVisitor implements ViewTreeWalker.Visitor {
+  private final LayoutHierarchyDumper mDumper;
+  private final JsonWriter mWriter;
+  private final Point mOffset;
+
+  public LayoutHierarchyVisitor(LayoutHierarchyDumper dumper, JsonWriter writer, View root) {
+    mDumper = dumper;
+    mWriter = writer;
+    mOffset =
+        new Point(
+            -LayoutHierarchyDumper.getViewLeft(root), -LayoutHierarchyDumper.getViewTop(root));
+  }
+
+  @Override
+  public boolean enter(View view) throws IOException, JSONException {
+    JSONObject node = mDumper.dumpAttributes(view, mOffset);
+    HierarchyPlugin plugin = mDumper.findHierarchyPlugin(view);
+    if (plugin != BaseViewHierarchyPlugin.getInstance()) {
+      mDumper.writeHierarchy(plugin, node, view, mOffset, mWriter);
+      return false;
+    }
+
+    mWriter.beginObject();
+    JsonUtil.writeMembers(mWriter, node);
+    if (!(view instanceof ViewGroup)) {
+      mWriter.endObject();
+      return false;
+    }
+
+    mWriter.name(HierarchyPlugin.KEY_CHILDREN);
+    mWriter.beginArray();
+    mOffset.offset(LayoutHierarchyDumper.getViewLeft(view), LayoutHierarchyDumper.getViewTop(view));
+    return true;
+  }
+
+  @Override
+  public void exit(View view) throws IOException {
+    mOffset.offset(
+        -LayoutHierarchyDumper.getViewLeft(view), -LayoutHierarchyDumper.getViewTop(view));
+    mWriter.endArray();
+    mWriter.endObject();
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.layouthierarchy;
+
+import android.graphics.Point;
+import android.util.JsonWriter;
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.IOException;
+import org.json.JSONException;
+
+/**
+ * A {@link HierarchyPlugin} that can also write the hierarchy straight into a {@link JsonWriter},
+ * without building a {@link org.json.JSONObject} for it first. Plugins that don't implement this
+ * still work with streaming dumps, they're just less efficient.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public interface StreamingHierarchyPlugin extends HierarchyPlugin {
+
+  /**
+   * Writes the hierarchy of the given type, typically as {@link #KEY_CHILDREN}. The writer is
+   * positioned inside the node, after its attributes. Children should be written with {@link
+   * LayoutHierarchyDumper#dumpHierarchy(Object, Point, JsonWriter)}.
+   */
+  void writeHierarchy(LayoutHierarchyDumper dumper, JsonWriter writer, Object obj, Point offset)
+      throws IOException, JSONException;
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.layouthierarchy;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Reports elements that Talkback would focus, but that have nothing to announce once focused.
+ * Used to be the only check of {@link AccessibilityIssuesDumper}.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+final class TalkbackFocusableWithoutSpokenFeedbackRule implements AccessibilityRule {
+  private static final TalkbackFocusableWithoutSpokenFeedbackRule INSTANCE =
+      new TalkbackFocusableWithoutSpokenFeedbackRule();
+
+  static TalkbackFocusableWithoutSpokenFeedbackRule getInstance() {
+    return INSTANCE;
+  }
+
+  private TalkbackFocusableWithoutSpokenFeedbackRule() {}
+
+  @Override
+  public String getId() {
+    return "talkback_focusable_element_without_spoken_feedback";
+  }
+
+  @Override
+  public String getName() {
+    return "Focusable Element Without Spoken Feedback";
+  }
+
+  @Override
+  public String getDescription() {
+    return "The element is focusable by screen readers such as Talkback, but has no text to "
+        + "announce.";
+  }
+
+  @Override
+  public @Nullable List<String> check(AccessibilityNodeSnapshot node) {
+    if (!node.isTalkbackFocusable() || node.isSpeakingNode()) {
+      return null;
+    }
+
+    List<String> suggestions = new ArrayList<>();
+    suggestions.add("Add a contentDescription to the element.");
+    if (node.isViewGroup()) {
+      suggestions.add("Add a contentDescription or visible text to a child element.");
+    }
+    return suggestions;
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.testing.screenshot.layouthierarchy;
+
+import android.view.View;
+import android.view.ViewGroup;
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.IOException;
+import java.util.List;
+import org.json.JSONException;
+
+/**
+ * Walks a view hierarchy once, depth first, and lets any number of {@link Visitor}s look at every
+ * view. This is much cheaper than having each of them walk the hierarchy on its own.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public final class ViewTreeWalker {
+
+  /** Looks at the views of the hierarchy, in the order they are walked. */
+  public interface Visitor {
+    /**
+     * Called when the walk reaches the given view, before any of its descendants.
+     *
+     * @return false if this visitor isn't interested in the descendants of the view, in which case
+     *     they're not visited and {@link #exit} isn't called for this view either.
+     */
+    boolean enter(View view) throws IOException, JSONException;
+
+    /** Called once all the descendants of the view have been visited. */
+    void exit(View view) throws IOException, JSONException;
+  }
+
+  private final Visitor[] mVisitors;
+
+  /**
+   * The visitors are called in the order given here, so a visitor can rely on the state of the
+   * visitors that precede it.
+   */
+  public ViewTreeWalker(List<? extends Visitor> visitors) {
+    mVisitors = visitors.toArray(new Visitor[visitors.size()]);
+  }
+
+  public void walk(View root) throws IOException, JSONException {
+    walk(root, mVisitors, mVisitors.length);
+  }
+
+  private static void walk(View view, Visitor[] visitors, int count)
+      throws IOException, JSONException {
+    Visitor[] entered = new Visitor[count];
+    int enteredCount = 0;
+    for (int i = 0; i < count; i++) {
+      if (visitors[i].enter(view)) {
+        entered[enteredCount++] = visitors[i];
+      }
+    }
+
+    if (enteredCount > 0 && view instanceof ViewGroup) {
+      ViewGroup group = (ViewGroup) view;
+      for (int i = 0, size = group.getChildCount(); i < size; i++) {
+        walk(group.getChildAt(i), entered, enteredCount);
+      }
+    }
+
+    for (int i = enteredCount - 1; i >= 0; i--) {
+      entered[i].exit(view);
+    }
+  }
+}
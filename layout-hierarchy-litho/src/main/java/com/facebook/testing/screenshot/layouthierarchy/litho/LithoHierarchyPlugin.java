@@ -17,18 +17,20 @@
 package com.facebook.testing.screenshot.layouthierarchy.litho;
 
 import android.graphics.Point;
+import android.util.JsonWriter;
 import com.facebook.infer.annotation.Nullsafe;
 import com.facebook.litho.DebugComponent;
 import com.facebook.litho.LithoView;
 import com.facebook.testing.screenshot.layouthierarchy.BaseViewHierarchyPlugin;
-import com.facebook.testing.screenshot.layouthierarchy.HierarchyPlugin;
 import com.facebook.testing.screenshot.layouthierarchy.LayoutHierarchyDumper;
+import com.facebook.testing.screenshot.layouthierarchy.StreamingHierarchyPlugin;
+import java.io.IOException;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 @Nullsafe(Nullsafe.Mode.LOCAL)
-public class LithoHierarchyPlugin implements HierarchyPlugin {
+public class LithoHierarchyPlugin implements StreamingHierarchyPlugin {
   private static final LithoHierarchyPlugin INSTANCE = new LithoHierarchyPlugin();
 
   public static LithoHierarchyPlugin getInstance() {
@@ -76,4 +78,39 @@ public class LithoHierarchyPlugin implements HierarchyPlugin {
     }
     root.put(BaseViewHierarchyPlugin.KEY_CHILDREN, children);
   }
+
+  @Override
+  public void writeHierarchy(
+      LayoutHierarchyDumper dumper, JsonWriter writer, Object obj, Point offset)
+      throws IOException, JSONException {
+    if (!accept(obj)) {
+      return;
+    }
+
+    if (obj instanceof LithoView) {
+      LithoView lithoView = (LithoView) obj;
+      DebugComponent debugComponent = DebugComponent.getRootInstance(lithoView);
+      if (debugComponent == null) {
+        return;
+      }
+      final int offsetLeft = LayoutHierarchyDumper.getViewLeft(lithoView);
+      final int offsetTop = LayoutHierarchyDumper.getViewTop(lithoView);
+      offset.offset(offsetLeft, offsetTop);
+      writeHierarchy(dumper, writer, debugComponent, offset);
+      offset.offset(-offsetLeft, -offsetTop);
+    } else {
+      writeHierarchy(dumper, writer, (DebugComponent) obj, offset);
+    }
+  }
+
+  private void writeHierarchy(
+      LayoutHierarchyDumper dumper, JsonWriter writer, DebugComponent component, Point offset)
+      throws IOException, JSONException {
+    writer.name(BaseViewHierarchyPlugin.KEY_CHILDREN);
+    writer.beginArray();
+    for (DebugComponent child : component.getChildComponents()) {
+      dumper.dumpHierarchy(child, offset, writer);
+    }
+    writer.endArray();
+  }
 }
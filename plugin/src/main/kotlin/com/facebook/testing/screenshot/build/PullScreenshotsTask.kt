@@ -111,6 +111,11 @@ open class PullScreenshotsTask : ScreenshotTask() {
                   add("${extension.multipleDevices}")
                 }
 
+                if (extension.parallelDevices > 1) {
+                  add("--parallel-devices")
+                  add("${extension.parallelDevices}")
+                }
+
                 if (isVerifyOnly) {
                   add("--no-pull")
                 }
@@ -118,6 +123,16 @@ open class PullScreenshotsTask : ScreenshotTask() {
                 if (bundleResults) {
                   add("--bundle-results")
                 }
+
+                extension.streamCompression?.let {
+                  add("--stream-bundle")
+                  add(it)
+                }
+
+                extension.pullCacheDir?.let {
+                  add("--pull-cache")
+                  add(it)
+                }
               }
 
       println(execSpec.args)
@@ -43,6 +43,15 @@ open class ScreenshotsPluginExtension {
   var failureDir: String? = null
   /** Whether to tar the screenshots in an archive file to transfer */
   var bundleResults = false
+  /**
+   * Stream the screenshots out of the device instead of archiving them there first, either
+   * uncompressed ("none") or with fast gzip compression ("fast")
+   */
+  var streamCompression: String? = null
+  /** A directory to cache pulled artifacts in, so that unchanged ones aren't pulled again */
+  var pullCacheDir: String? = null
+  /** How many devices to pull and verify screenshots from at the same time */
+  var parallelDevices = 1
 
   var testRunId: String = UUID.randomUUID().toString()
 }
@@ -16,11 +16,12 @@ from . import common
 
 
 class AdbExecutor:
-    def __init__(self):
-        pass
+    def __init__(self, adb_args=()):
+        # e.g. ["-s", serial], to talk to a specific device
+        self._adb_args = list(adb_args)
 
     def execute(self, command):
-        result = common.check_output([common.get_adb()] + command)
+        result = common.check_output([common.get_adb()] + self._adb_args + command)
         if result is None:
             raise RuntimeError(
                 "ERROR: you shouldn't see this in normal operation,"
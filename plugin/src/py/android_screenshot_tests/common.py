@@ -28,6 +28,42 @@ def get_image_file_name(name, x, y):
     return image_file
 
 
+def get_tile_file_name(screenshot, x, y):
+    """The file holding tile (x, y) of the given screenshot from metadata.json.
+
+    When the device deduplicates tiles, tiles are stored once per unique
+    content and named after the hash of their pixels, so they can be shared
+    between screenshots.
+    """
+    if screenshot.get("contentAddressed"):
+        index = x * int(screenshot["tileHeight"]) + y
+        return screenshot["tileHashes"][index] + ".png"
+    return get_image_file_name(screenshot["name"], x, y)
+
+
+def get_uniform_tile(screenshot, x, y):
+    """The description of tile (x, y) if it's entirely of a single color, or None.
+
+    Such tiles have no file when the device skips uniform tiles, they're
+    described by their color and size in uniformTiles instead.
+    """
+    for tile in screenshot.get("uniformTiles") or []:
+        if tile["x"] == x and tile["y"] == y:
+            return tile
+    return None
+
+
+def get_uniform_tile_rgba(tile):
+    """The (r, g, b, a) color of a tile returned by get_uniform_tile."""
+    argb = int(tile["color"].lstrip("#"), 16)
+    return (
+        (argb >> 16) & 0xFF,
+        (argb >> 8) & 0xFF,
+        argb & 0xFF,
+        (argb >> 24) & 0xFF,
+    )
+
+
 def get_android_sdk():
     android_sdk = os.environ.get("ANDROID_SDK") or os.environ.get("ANDROID_HOME")
 
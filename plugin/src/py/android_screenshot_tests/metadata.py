@@ -23,6 +23,31 @@ import tempfile
 import unittest
 
 
+# Reads the screenshots recorded in a metadata.jsonl journal, one JSON
+# object per line. An entry that was cut short because the instrumentation
+# crashed while writing it is skipped.
+def read_journal(journal_file):
+    screenshots = []
+    with open(journal_file, "r") as f:
+        for line in f:
+            line = line.strip()
+            if not line:
+                continue
+            try:
+                screenshot = json.loads(line)
+            except ValueError:
+                continue
+            if isinstance(screenshot, dict):
+                screenshots.append(screenshot)
+    return screenshots
+
+
+# Writes the screenshots of a metadata.jsonl journal as a metadata.json file
+def compact_journal(journal_file, metadata_file):
+    with open(metadata_file, "w") as f:
+        f.write(json.dumps(read_journal(journal_file)))
+
+
 # Given a metadata file locally, this transforms it (in-place), to
 # remove any screenshot elements that don't satisfy the given filter
 # criteria
@@ -0,0 +1,117 @@
+#!/usr/bin/env python3
+# Copyright (c) Meta Platforms, Inc. and affiliates.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#     http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+
+"""A host side cache of the artifacts pulled from devices, keyed by content.
+
+Most artifacts of a test run are identical from one run to the next, so
+rather than pulling the whole run directory again, the device is asked for
+the checksum of every file in one adb call and only the files that aren't
+in the cache yet are pulled. The others are hard-linked from the cache into
+the output directory, so nothing in that directory may be modified in place
+afterwards, only replaced or deleted.
+"""
+
+import hashlib
+import os
+import shutil
+import tempfile
+from os.path import join
+
+HASH_CHUNK_SIZE = 1024 * 1024
+
+
+class PullCache:
+    def __init__(self, cache_dir):
+        self.cache_dir = cache_dir
+
+    def _cache_file(self, checksum):
+        return join(self.cache_dir, checksum[:2], checksum)
+
+    def pull_folder(self, adb_puller, src, dest):
+        """Makes dest a copy of the remote folder src.
+
+        Returns the number of files that had to be pulled, or None if the
+        device can't list checksums, in which case nothing was pulled."""
+        checksums = adb_puller.list_files_with_checksums(src)
+        if checksums is None:
+            return None
+
+        missing = [
+            name
+            for name, checksum in sorted(checksums.items())
+            if not os.path.exists(self._cache_file(checksum))
+        ]
+        if missing:
+            # The files already in dest may be links to the cache, pulling over
+            # them would write into the cached copies
+            os.makedirs(dest, exist_ok=True)
+            temp_dir = tempfile.mkdtemp(dir=dest)
+            try:
+                adb_puller.pull_files(src, missing, temp_dir)
+                for name in missing:
+                    pulled = join(temp_dir, name)
+                    self._add(pulled, checksums[name])
+                    _replace(pulled, join(dest, name))
+            finally:
+                shutil.rmtree(temp_dir)
+
+        for name, checksum in checksums.items():
+            if name not in missing:
+                _link_or_copy(self._cache_file(checksum), join(dest, name))
+        return len(missing)
+
+    def _add(self, path, checksum):
+        if _md5(path) != checksum:
+            # Changed on the device while it was being pulled, or the device's
+            # md5sum is broken, either way don't trust it for the next runs
+            return
+        cache_file = self._cache_file(checksum)
+        os.makedirs(os.path.dirname(cache_file), exist_ok=True)
+        try:
+            os.link(path, cache_file)
+        except FileExistsError:
+            # Another device pulled the same file at the same time
+            pass
+        except OSError:
+            # Copy under a temporary name, so that a partial copy is never seen
+            fd, temp_file = tempfile.mkstemp(dir=os.path.dirname(cache_file))
+            os.close(fd)
+            shutil.copyfile(path, temp_file)
+            os.replace(temp_file, cache_file)
+
+
+def _replace(src, dest):
+    """Moves src to dest. A link at dest is replaced, not written through."""
+    os.makedirs(os.path.dirname(dest), exist_ok=True)
+    os.replace(src, dest)
+
+
+def _link_or_copy(src, dest):
+    os.makedirs(os.path.dirname(dest), exist_ok=True)
+    if os.path.lexists(dest):
+        os.unlink(dest)
+    try:
+        os.link(src, dest)
+    except OSError:
+        # e.g. the cache is on a different file system
+        shutil.copyfile(src, dest)
+
+
+def _md5(path):
+    md5 = hashlib.md5()
+    with open(path, "rb") as f:
+        for chunk in iter(lambda: f.read(HASH_CHUNK_SIZE), b""):
+            md5.update(chunk)
+    return md5.hexdigest()
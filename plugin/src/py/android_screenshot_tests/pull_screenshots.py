@@ -14,21 +14,26 @@
 # limitations under the License.
 
 import codecs
+import concurrent.futures
 import getopt
 import json
 import os, platform, subprocess
 import shutil
 import sys
+import tarfile
 import tempfile
+import traceback
 import urllib
 import xml.etree.ElementTree as ET
 import zipfile
 from os.path import abspath, join
 
-from . import aapt, common, metadata
+from . import aapt, common, metadata, raw_tiles
+from .pull_cache import PullCache
+from .adb_executor import AdbExecutor
 from .device_name_calculator import DeviceNameCalculator
 from .no_op_device_name_calculator import NoOpDeviceNameCalculator
-from .simple_puller import SimplePuller
+from .simple_puller import SimplePuller, StreamingPuller
 
 try:
     from Queue import Queue
@@ -46,6 +51,9 @@ KEY_WIDTH = "width"
 KEY_HEIGHT = "height"
 KEY_CHILDREN = "children"
 DEFAULT_VIEW_CLASS = "android.view.View"
+ARTIFACT_ARCHIVE_PREFIX = "artifacts_"
+# How many of the slowest screenshots the summary lists
+SLOWEST_SCREENSHOTS_COUNT = 10
 
 
 def usage():
@@ -330,9 +338,24 @@ def write_image(hierarchy, dir, html, screenshot, parent_id, comparing):
         html.write("<tr>")
         for x in range(int(screenshot["tileWidth"])):
             html.write("<td>")
-            image_file = "./" + common.get_image_file_name(screenshot["name"], x, y)
-
-            if os.path.exists(join(dir, image_file)):
+            image_file = "./" + common.get_tile_file_name(screenshot, x, y)
+            uniform_tile = common.get_uniform_tile(screenshot, x, y)
+
+            if uniform_tile is not None:
+                r, g, b, a = common.get_uniform_tile_rgba(uniform_tile)
+                html.write(
+                    '<div style="width: %dpx; height: %dpx; '
+                    'background-color: rgba(%d, %d, %d, %.3f)"></div>'
+                    % (
+                        uniform_tile["width"],
+                        uniform_tile["height"],
+                        r,
+                        g,
+                        b,
+                        a / 255.0,
+                    )
+                )
+            elif os.path.exists(join(dir, image_file)):
                 html.write('<img src="%s" />' % image_file)
 
             html.write("</td>")
@@ -357,11 +380,18 @@ def write_image_diff(old_screenshot_url, dir, html, screenshot):
     x_offset = y_offset = height = 0
     for y in range(int(screenshot["tileHeight"])):
         for x in range(int(screenshot["tileWidth"])):
-            image_file = join(
-                dir, "./" + common.get_image_file_name(screenshot["name"], x, y)
-            )
-            if os.path.exists(image_file):
+            image_file = join(dir, "./" + common.get_tile_file_name(screenshot, x, y))
+            uniform_tile = common.get_uniform_tile(screenshot, x, y)
+            img = None
+            if uniform_tile is not None:
+                img = Image.new(
+                    "RGBA",
+                    (uniform_tile["width"], uniform_tile["height"]),
+                    common.get_uniform_tile_rgba(uniform_tile),
+                )
+            elif os.path.exists(image_file):
                 img = Image.open(image_file)
+            if img is not None:
                 new_image.paste(img, (x_offset, y_offset))
                 x_offset += img.size[0]
                 height = img.size[1]
@@ -461,7 +491,17 @@ def pull_metadata(package, dir, adb_puller):
         OLD_ROOT_SCREENSHOT_DIR, package, "app_screenshots-default/metadata.json"
     )
 
-    if adb_puller.remote_file_exists(metadata_file):
+    # Every screenshot is in the journal as soon as it's saved, while
+    # metadata.json can miss the ones of a process that crashed before
+    # flushing, so the journal wins whenever there is one
+    journal_file = metadata_file + "l"
+
+    if adb_puller.remote_file_exists(journal_file):
+        local_journal_file = join(dir, "metadata.jsonl")
+        adb_puller.pull(journal_file, local_journal_file)
+        metadata.compact_journal(local_journal_file, join(dir, "metadata.json"))
+        os.unlink(local_journal_file)
+    elif adb_puller.remote_file_exists(metadata_file):
         adb_puller.pull(metadata_file, join(dir, "metadata.json"))
     elif adb_puller.remote_file_exists(old_metadata_file):
         adb_puller.pull(old_metadata_file, join(dir, "metadata.json"))
@@ -477,8 +517,20 @@ def create_empty_metadata_file(dir):
         out.write("{}")
 
 
-def pull_images(dir, device_dir, test_run_id, adb_puller, bundle_results=False):
+def pull_images(
+    dir, device_dir, test_run_id, adb_puller, bundle_results=False, pull_cache=None
+):
     if adb_puller.remote_file_exists(android_path_join(device_dir, test_run_id)):
+        # Only what changed since the previous runs goes over adb, unless the
+        # device can't list checksums
+        if pull_cache and (
+            pull_cache.pull_folder(
+                adb_puller, android_path_join(device_dir, test_run_id), dir
+            )
+            is not None
+        ):
+            return
+
         bundle_name_local_file = join(dir, os.path.basename(test_run_id))
 
         # Optimization to pull down all the screenshots in a single pull.
@@ -505,6 +557,7 @@ def pull_filtered(
     test_run_id,
     filter_name_regex=None,
     bundle_results=False,
+    pull_cache=None,
 ):
     device_dir = pull_metadata(package, dir, adb_puller=adb_puller)
     _validate_metadata(dir)
@@ -517,7 +570,28 @@ def pull_filtered(
         test_run_id,
         adb_puller=adb_puller,
         bundle_results=bundle_results,
+        pull_cache=pull_cache,
+    )
+
+
+def extract_artifact_archives(dir):
+    """Unpacks the artifacts_<n>.tar archives written in archive mode, if any"""
+    archives = sorted(
+        f
+        for f in os.listdir(dir)
+        if f.startswith(ARTIFACT_ARCHIVE_PREFIX) and f.endswith(".tar")
     )
+    for archive in archives:
+        path = join(dir, archive)
+        with tarfile.open(path) as tar:
+            for member in tar:
+                # Only plain files are ever archived, and never in sub directories
+                if member.isfile() and os.path.basename(member.name) == member.name:
+                    if hasattr(tarfile, "data_filter"):
+                        tar.extract(member, dir, filter="data")
+                    else:
+                        tar.extract(member, dir)
+        os.unlink(path)
 
 
 def move_all_files_to_different_directory(source_dir, target_dir):
@@ -533,6 +607,27 @@ def _summary(dir):
         metadataJson = json.load(f)
     count = len(metadataJson)
     print("Found %d screenshots" % count)
+    _print_slowest_screenshots(metadataJson)
+
+
+def _print_slowest_screenshots(metadataJson, limit=SLOWEST_SCREENSHOTS_COUNT):
+    """Lists the screenshots that took the longest to record on the device,
+    with the time spent in each phase. Metadata written by older versions of
+    the library has no timings, in which case nothing is printed."""
+    timed = [s for s in metadataJson if "total" in (s.get("timings") or {})]
+    if not timed:
+        return
+
+    timed.sort(key=lambda s: s["timings"]["total"], reverse=True)
+    print("Slowest screenshots:")
+    for screenshot in timed[:limit]:
+        timings = screenshot["timings"]
+        phases = ", ".join(
+            "%s %.1fms" % (phase, millis)
+            for phase, millis in timings.items()
+            if phase != "total"
+        )
+        print("  %8.1fms  %s (%s)" % (timings["total"], screenshot["name"], phases))
 
 
 def _validate_metadata(dir):
@@ -563,6 +658,7 @@ def pull_screenshots(
     failure_dir=None,
     diff=False,
     open_html=False,
+    pull_cache=None,
 ):
     if not perform_pull and temp_dir is None:
         raise RuntimeError(
@@ -571,12 +667,7 @@ def pull_screenshots(
     if not perform_pull and test_run_id is None:
         raise RuntimeError("""You must supply a test run id if --no-pull is present""")
 
-    temp_dir = temp_dir or tempfile.mkdtemp(prefix="screenshots")
-
-    if not os.path.exists(temp_dir):
-        os.makedirs(temp_dir)
-
-    copy_assets(temp_dir)
+    temp_dir = _create_temp_dir(temp_dir)
 
     if perform_pull is True:
         pull_filtered(
@@ -586,8 +677,49 @@ def pull_screenshots(
             test_run_id=test_run_id,
             filter_name_regex=filter_name_regex,
             bundle_results=bundle_results,
+            pull_cache=pull_cache,
         )
 
+    process_screenshots(
+        temp_dir,
+        device_name_calculator=device_name_calculator,
+        record=record,
+        verify=verify,
+        opt_generate_png=opt_generate_png,
+        test_img_api=test_img_api,
+        old_imgs_data=old_imgs_data,
+        failure_dir=failure_dir,
+        diff=diff,
+        open_html=open_html,
+    )
+
+
+def _create_temp_dir(temp_dir):
+    temp_dir = temp_dir or tempfile.mkdtemp(prefix="screenshots")
+
+    if not os.path.exists(temp_dir):
+        os.makedirs(temp_dir)
+
+    copy_assets(temp_dir)
+    return temp_dir
+
+
+def process_screenshots(
+    temp_dir,
+    device_name_calculator=None,
+    record=None,
+    verify=None,
+    opt_generate_png=None,
+    test_img_api=None,
+    old_imgs_data=None,
+    failure_dir=None,
+    diff=False,
+    open_html=False,
+):
+    """Stitches, records or verifies, and reports the screenshots pulled to
+    temp_dir"""
+    extract_artifact_archives(temp_dir)
+    raw_tiles.convert_raw_tiles(temp_dir)
     _validate_metadata(temp_dir)
 
     path_to_html = generate_html(temp_dir, test_img_api, old_imgs_data, diff)
@@ -627,6 +759,116 @@ def pull_screenshots(
                 os.startfile(full_path)
 
 
+def _get_serial(puller_args):
+    if "-s" in puller_args:
+        return puller_args[puller_args.index("-s") + 1]
+    return None
+
+
+def pull_screenshots_from_devices(
+    process,
+    puller_args_list,
+    parallel_devices=1,
+    multiple_devices=False,
+    perform_pull=True,
+    temp_dir=None,
+    failure_dir=None,
+    stream_compression=None,
+    test_run_id=None,
+    filter_name_regex=None,
+    bundle_results=False,
+    pull_cache=None,
+    **kwargs
+):
+    """Pulls, stitches and verifies the screenshots of every device.
+
+    With parallel_devices > 1 up to that many devices are pulled at the same
+    time, each into its own directory under temp_dir and failure_dir, named
+    after its serial. Pulling mostly waits on adb, so threads are enough.
+    The pulled screenshots are then processed one device after the other on
+    this thread: stitching uses process pools of its own, which shouldn't be
+    forked from a multithreaded process, and devices without
+    multiple_devices share the record and verify directories. A failing
+    device doesn't stop the others.
+
+    With a stream_compression, see StreamingPuller, folders are streamed out
+    of the devices instead of being archived on them first.
+
+    Returns the number of devices that failed."""
+    if parallel_devices <= 1 or len(puller_args_list) <= 1 or not perform_pull:
+        for puller_args in puller_args_list:
+            pull_screenshots(
+                process,
+                adb_puller=_create_puller(puller_args, stream_compression),
+                device_name_calculator=_device_name_calculator(
+                    puller_args, multiple_devices
+                ),
+                perform_pull=perform_pull,
+                temp_dir=temp_dir,
+                failure_dir=failure_dir,
+                test_run_id=test_run_id,
+                filter_name_regex=filter_name_regex,
+                bundle_results=bundle_results,
+                pull_cache=pull_cache,
+                **kwargs
+            )
+        return 0
+
+    devices = []
+    with concurrent.futures.ThreadPoolExecutor(max_workers=parallel_devices) as pool:
+        for index, puller_args in enumerate(puller_args_list):
+            serial = _get_serial(puller_args) or "device_%d" % index
+            device_temp_dir = _create_temp_dir(
+                join(temp_dir, serial) if temp_dir else None
+            )
+            future = pool.submit(
+                pull_filtered,
+                process,
+                adb_puller=_create_puller(puller_args, stream_compression),
+                dir=device_temp_dir,
+                test_run_id=test_run_id,
+                filter_name_regex=filter_name_regex,
+                bundle_results=bundle_results,
+                pull_cache=pull_cache,
+            )
+            devices.append((serial, puller_args, device_temp_dir, future))
+
+    failures = 0
+    for serial, puller_args, device_temp_dir, future in devices:
+        try:
+            future.result()
+            process_screenshots(
+                device_temp_dir,
+                device_name_calculator=_device_name_calculator(
+                    puller_args, multiple_devices
+                ),
+                failure_dir=join(failure_dir, serial) if failure_dir else None,
+                **kwargs
+            )
+        except Exception:
+            failures += 1
+            print("Failed to process the screenshots of %s:" % serial, file=sys.stderr)
+            traceback.print_exc()
+    if failures:
+        print(
+            "%d of %d devices failed" % (failures, len(puller_args_list)),
+            file=sys.stderr,
+        )
+    return failures
+
+
+def _create_puller(puller_args, stream_compression):
+    if stream_compression:
+        return StreamingPuller(puller_args, stream_compression)
+    return SimplePuller(puller_args)
+
+
+def _device_name_calculator(puller_args, multiple_devices):
+    if not multiple_devices:
+        return NoOpDeviceNameCalculator()
+    return DeviceNameCalculator(AdbExecutor(puller_args))
+
+
 def setup_paths():
     android_home = common.get_android_sdk()
     os.environ["PATH"] = os.environ["PATH"] + ":" + android_home + "/platform-tools/"
@@ -650,6 +892,9 @@ def main(argv):
                 "multiple-devices=",
                 "test-run-id=",
                 "bundle-results",
+                "parallel-devices=",
+                "stream-bundle=",
+                "pull-cache=",
             ],
         )
     except getopt.GetoptError:
@@ -669,12 +914,11 @@ def main(argv):
         process = aapt.get_package(process)
 
     should_perform_pull = "--no-pull" not in opts
-    bundle_results = "--bundle-results" in opts
+    stream_compression = opts.get("--stream-bundle")
+    bundle_results = "--bundle-results" in opts or stream_compression is not None
 
     multiple_devices = opts.get("--multiple-devices")
-    device_calculator = (
-        DeviceNameCalculator() if multiple_devices else NoOpDeviceNameCalculator()
-    )
+    parallel_devices = int(opts.get("--parallel-devices", 1))
 
     base_puller_args = []
     if "-e" in opts:
@@ -697,22 +941,25 @@ def main(argv):
     else:
         puller_args_list = [base_puller_args]
 
-    for puller_args in puller_args_list:
-        pull_screenshots(
-            process,
-            perform_pull=should_perform_pull,
-            temp_dir=opts.get("--temp-dir"),
-            filter_name_regex=opts.get("--filter-name-regex"),
-            opt_generate_png=opts.get("--generate-png"),
-            test_run_id=opts.get("--test-run-id"),
-            record=opts.get("--record"),
-            verify=opts.get("--verify"),
-            adb_puller=SimplePuller(puller_args),
-            device_name_calculator=device_calculator,
-            failure_dir=opts.get("--failure-dir"),
-            open_html=opts.get("--open-html"),
-            bundle_results=bundle_results,
-        )
+    failures = pull_screenshots_from_devices(
+        process,
+        puller_args_list,
+        parallel_devices=parallel_devices,
+        multiple_devices=multiple_devices,
+        perform_pull=should_perform_pull,
+        temp_dir=opts.get("--temp-dir"),
+        filter_name_regex=opts.get("--filter-name-regex"),
+        opt_generate_png=opts.get("--generate-png"),
+        test_run_id=opts.get("--test-run-id"),
+        record=opts.get("--record"),
+        verify=opts.get("--verify"),
+        failure_dir=opts.get("--failure-dir"),
+        open_html=opts.get("--open-html"),
+        bundle_results=bundle_results,
+        stream_compression=stream_compression,
+        pull_cache=PullCache(opts["--pull-cache"]) if "--pull-cache" in opts else None,
+    )
+    return 1 if failures else 0
 
 
 if __name__ == "__main__":
@@ -0,0 +1,96 @@
+#!/usr/bin/env python3
+# Copyright (c) Meta Platforms, Inc. and affiliates.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#     http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+
+"""Converts the raw tiles written with SCREENSHOT_TESTS_TILE_FORMAT=raw to PNGs.
+
+The device writes tiles in this trivial format so that it doesn't have to
+spend its (slow, emulated) CPU on PNG compression. The host has many more
+cores, so the conversion is spread over a pool of processes.
+"""
+
+import multiprocessing
+import os
+import struct
+import zlib
+from os.path import join
+
+RAW_TILE_SUFFIX = ".rgba"
+
+_MAGIC = b"SSRT"
+# magic, version, compression, flags, reserved, width, height
+_HEADER = struct.Struct(">4sBBBBii")
+_COMPRESSION_NONE = 0
+_COMPRESSION_DEFLATE = 1
+_FLAG_PREMULTIPLIED = 1
+
+
+def read_raw_tile(path):
+    """Returns (width, height, premultiplied, rgba_bytes) of a raw tile."""
+    with open(path, "rb") as f:
+        content = f.read()
+    if len(content) < _HEADER.size:
+        raise ValueError("Truncated raw tile: %s" % path)
+    magic, version, compression, flags, _, width, height = _HEADER.unpack_from(content)
+    if magic != _MAGIC:
+        raise ValueError("Not a raw tile: %s" % path)
+    if version != 1:
+        raise ValueError("Unsupported raw tile version %d: %s" % (version, path))
+
+    pixels = content[_HEADER.size :]
+    if compression == _COMPRESSION_DEFLATE:
+        pixels = zlib.decompress(pixels)
+    elif compression != _COMPRESSION_NONE:
+        raise ValueError(
+            "Unsupported raw tile compression %d: %s" % (compression, path)
+        )
+    if len(pixels) != width * height * 4:
+        raise ValueError("Truncated raw tile: %s" % path)
+    return width, height, bool(flags & _FLAG_PREMULTIPLIED), pixels
+
+
+def convert_raw_tile(path):
+    """Replaces the raw tile at path with a PNG of the same name."""
+    from PIL import Image
+
+    width, height, premultiplied, pixels = read_raw_tile(path)
+    image = Image.frombytes(
+        "RGBa" if premultiplied else "RGBA", (width, height), pixels
+    )
+    if premultiplied:
+        image = image.convert("RGBA")
+    image.save(path[: -len(RAW_TILE_SUFFIX)] + ".png")
+    os.unlink(path)
+
+
+def find_raw_tiles(dir):
+    return sorted(join(dir, f) for f in os.listdir(dir) if f.endswith(RAW_TILE_SUFFIX))
+
+
+def convert_raw_tiles(dir, processes=None):
+    """Converts every raw tile in dir to a PNG, in parallel."""
+    raw_tiles = find_raw_tiles(dir)
+    if not raw_tiles:
+        return
+    if len(raw_tiles) == 1 or processes == 1:
+        for raw_tile in raw_tiles:
+            convert_raw_tile(raw_tile)
+        return
+
+    pool = multiprocessing.Pool(processes)
+    try:
+        pool.map(convert_raw_tile, raw_tiles, chunksize=8)
+    finally:
+        pool.close()
+        pool.join()
@@ -14,6 +14,7 @@
 # limitations under the License.
 
 import json
+import multiprocessing
 import os
 import shutil
 import sys
@@ -30,109 +31,213 @@ class VerifyError(Exception):
     pass
 
 
-class Recorder:
-    def __init__(self, input, output, failure_output):
-        self._input = input
-        self._output = output
-        self._realoutput = output
-        self._failure_output = failure_output
+def _get_tile_file_size(input_dir, screenshot, i, j):
+    uniform_tile = common.get_uniform_tile(screenshot, i, j)
+    if uniform_tile is not None:
+        return (int(uniform_tile["width"]), int(uniform_tile["height"]))
+    # Only reads the header, the pixels are decoded lazily
+    with Image.open(join(input_dir, common.get_tile_file_name(screenshot, i, j))) as im:
+        return im.size
+
 
-    def _get_image_size(self, file_name):
-        with Image.open(file_name) as im:
-            return im.size
+def _get_tile_stride(input_dir, screenshot):
+    """The size of every tile but the ones on the right and bottom edges"""
+    if "tilePixelWidth" in screenshot and "tilePixelHeight" in screenshot:
+        return (int(screenshot["tilePixelWidth"]), int(screenshot["tilePixelHeight"]))
+    return _get_tile_file_size(input_dir, screenshot, 0, 0)
 
-    def _copy(self, name, w, h):
-        tilewidth, tileheight = self._get_image_size(
-            join(self._input, common.get_image_file_name(name, 0, 0))
+
+def _get_canvas_size(input_dir, screenshot):
+    if "imageWidth" in screenshot and "imageHeight" in screenshot:
+        return (int(screenshot["imageWidth"]), int(screenshot["imageHeight"]))
+
+    # Older metadata doesn't have the size, add up the first row and column
+    width = 0
+    for i in range(int(screenshot["tileWidth"])):
+        width += _get_tile_file_size(input_dir, screenshot, i, 0)[0]
+    height = 0
+    for j in range(int(screenshot["tileHeight"])):
+        height += _get_tile_file_size(input_dir, screenshot, 0, j)[1]
+    return (width, height)
+
+
+def _open_tile(input_dir, screenshot, i, j):
+    uniform_tile = common.get_uniform_tile(screenshot, i, j)
+    if uniform_tile is not None:
+        return Image.new(
+            "RGBA",
+            (int(uniform_tile["width"]), int(uniform_tile["height"])),
+            common.get_uniform_tile_rgba(uniform_tile),
         )
+    return Image.open(join(input_dir, common.get_tile_file_name(screenshot, i, j)))
+
+
+def stitch(input_dir, output_dir, screenshot):
+    """Stitches the tiles of the screenshot into <output_dir>/<name>.png.
+
+    The sizes come from the metadata when it has them, so each tile is only
+    opened once, to be decoded and pasted."""
+    tile_width, tile_height = _get_tile_stride(input_dir, screenshot)
+    im = Image.new("RGBA", _get_canvas_size(input_dir, screenshot))
+
+    for i in range(int(screenshot["tileWidth"])):
+        for j in range(int(screenshot["tileHeight"])):
+            with _open_tile(input_dir, screenshot, i, j) as input_image:
+                im.paste(input_image, (i * tile_width, j * tile_height))
+
+    im.save(join(output_dir, screenshot["name"] + ".png"))
+    im.close()
+
+
+def _stitch_job(job):
+    stitch(*job)
+
+
+def _run_in_pool(function, jobs, processes):
+    """Returns function(job) for every job, computed over a pool of processes.
+
+    processes defaults to the number of cores of the host."""
+    if len(jobs) <= 1 or processes == 1:
+        return [function(job) for job in jobs]
+
+    pool = multiprocessing.Pool(processes)
+    try:
+        return pool.map(function, jobs, chunksize=1)
+    finally:
+        pool.close()
+        pool.join()
+
 
-        canvaswidth = 0
+def _largest_first(screenshots):
+    # So that the biggest screenshots don't end up last on a single busy process
+    return sorted(
+        screenshots,
+        key=lambda s: int(s["tileWidth"]) * int(s["tileHeight"]),
+        reverse=True,
+    )
 
-        for i in range(w):
-            input_file = common.get_image_file_name(name, i, 0)
-            canvaswidth += self._get_image_size(join(self._input, input_file))[0]
 
-        canvasheight = 0
+def stitch_all(input_dir, output_dir, screenshots, processes=None):
+    """Stitches every screenshot, in parallel over a pool of processes"""
+    jobs = [
+        (input_dir, output_dir, screenshot)
+        for screenshot in _largest_first(screenshots)
+    ]
+    _run_in_pool(_stitch_job, jobs, processes)
 
-        for j in range(h):
-            input_file = common.get_image_file_name(name, 0, j)
-            canvasheight += self._get_image_size(join(self._input, input_file))[1]
 
-        im = Image.new("RGBA", (canvaswidth, canvasheight))
+def _is_image_same(file1, file2, failure_file):
+    with Image.open(file1) as im1, Image.open(file2) as im2:
+        diff_image = ImageChops.difference(im1.convert("RGB"), im2.convert("RGB"))
+        try:
+            diff = diff_image.getbbox()
+            if diff is None and im1.size == im2.size:
+                return True
+            else:
+                if failure_file:
+                    diff_list = list(diff) if diff else []
+                    draw = ImageDraw.Draw(im2)
+                    draw.rectangle(diff_list, outline=(255, 0, 0))
+                    im2.save(failure_file)
+                return False
+        finally:
+            diff_image.close()
+
+
+def _tiles_match(input_dir, expected_file, screenshot):
+    """Compares every tile to the same area of the expected image, without
+    stitching the tiles"""
+    tile_width, tile_height = _get_tile_stride(input_dir, screenshot)
+    with Image.open(expected_file) as expected_image:
+        if expected_image.size != _get_canvas_size(input_dir, screenshot):
+            return False
+        expected = expected_image.convert("RGB")
+
+    try:
+        for i in range(int(screenshot["tileWidth"])):
+            for j in range(int(screenshot["tileHeight"])):
+                with _open_tile(input_dir, screenshot, i, j) as tile:
+                    actual_tile = tile.convert("RGB")
+                left = i * tile_width
+                top = j * tile_height
+                expected_tile = expected.crop(
+                    (left, top, left + actual_tile.width, top + actual_tile.height)
+                )
+                diff = ImageChops.difference(expected_tile, actual_tile)
+                bbox = diff.getbbox()
+                diff.close()
+                expected_tile.close()
+                actual_tile.close()
+                if bbox is not None:
+                    return False
+        return True
+    finally:
+        expected.close()
+
+
+def verify_screenshot(input_dir, reference_dir, actual_dir, failure_dir, screenshot):
+    """Returns None if the screenshot matches its reference, and the paths of
+    the expected and actual images otherwise.
+
+    Only failing screenshots are stitched, into actual_dir, and get their
+    actual, expected and diff images written to failure_dir."""
+    name = screenshot["name"]
+    expected = join(reference_dir, name + ".png")
+    if _tiles_match(input_dir, expected, screenshot):
+        return None
+
+    stitch(input_dir, actual_dir, screenshot)
+    actual = join(actual_dir, name + ".png")
+    if failure_dir:
+        # Outlines where the stitched image differs from the reference
+        _is_image_same(expected, actual, join(failure_dir, name + "_diff.png"))
+        shutil.copy(actual, join(failure_dir, name + "_actual.png"))
+        shutil.copy(expected, join(failure_dir, name + "_expected.png"))
+    return (expected, actual)
 
-        for i in range(w):
-            for j in range(h):
-                input_file = common.get_image_file_name(name, i, j)
-                with Image.open(join(self._input, input_file)) as input_image:
-                    im.paste(input_image, (i * tilewidth, j * tileheight))
 
-        im.save(join(self._output, name + ".png"))
-        im.close()
+def _verify_job(job):
+    return verify_screenshot(*job)
+
+
+class Recorder:
+    def __init__(self, input, output, failure_output, processes=None):
+        self._input = input
+        self._output = output
+        self._realoutput = output
+        self._failure_output = failure_output
+        self._processes = processes
 
     def _get_metadata_json(self):
         with open(join(self._input, "metadata.json"), "r") as f:
             return json.load(f)
 
     def _record(self):
-        metadata = self._get_metadata_json()
-        for screenshot in metadata:
-            self._copy(
-                screenshot["name"],
-                int(screenshot["tileWidth"]),
-                int(screenshot["tileHeight"]),
-            )
+        stitch_all(
+            self._input, self._output, self._get_metadata_json(), self._processes
+        )
 
     def _clean(self):
         if os.path.exists(self._output):
             shutil.rmtree(self._output)
         os.makedirs(self._output)
 
-    def _is_image_same(self, file1, file2, failure_file):
-        with Image.open(file1) as im1, Image.open(file2) as im2:
-            diff_image = ImageChops.difference(im1.convert("RGB"), im2.convert("RGB"))
-            try:
-                diff = diff_image.getbbox()
-                if diff is None and im1.size == im2.size:
-                    return True
-                else:
-                    if failure_file:
-                        diff_list = list(diff) if diff else []
-                        draw = ImageDraw.Draw(im2)
-                        draw.rectangle(diff_list, outline=(255, 0, 0))
-                        im2.save(failure_file)
-                    return False
-            finally:
-                diff_image.close()
-
     def record(self):
         self._clean()
         self._record()
 
     def verify(self):
+        # Stitched images are only needed to show failures
         self._output = tempfile.mkdtemp()
-        self._record()
-
-        screenshots = self._get_metadata_json()
-        failures = []
-        for screenshot in screenshots:
-            name = screenshot["name"] + ".png"
-            actual = join(self._output, name)
-            expected = join(self._realoutput, name)
-            if self._failure_output:
-                diff_name = screenshot["name"] + "_diff.png"
-                diff = join(self._failure_output, diff_name)
-
-                if not self._is_image_same(expected, actual, diff):
-                    expected_name = screenshot["name"] + "_expected.png"
-                    actual_name = screenshot["name"] + "_actual.png"
-
-                    shutil.copy(actual, join(self._failure_output, actual_name))
-                    shutil.copy(expected, join(self._failure_output, expected_name))
-
-                    failures.append((expected, actual))
-            else:
-                if not self._is_image_same(expected, actual, None):
-                    raise VerifyError("Image %s is not same as %s" % (expected, actual))
+        jobs = [
+            (self._input, self._realoutput, self._output, self._failure_output, s)
+            for s in _largest_first(self._get_metadata_json())
+        ]
+        failures = [
+            failure
+            for failure in _run_in_pool(_verify_job, jobs, self._processes)
+            if failure is not None
+        ]
 
         if failures:
             reason = ""
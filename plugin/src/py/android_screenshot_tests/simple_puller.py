@@ -13,6 +13,8 @@
 # See the License for the specific language governing permissions and
 # limitations under the License.
 
+import os
+import shlex
 import subprocess
 import tarfile
 import tempfile
@@ -44,7 +46,7 @@ class SimplePuller:
     def _get_tar_name(src):
         return "{}.tar.gz".format(src)
 
-    def _tar(self, src):
+    def _tar(self, src, names=(".",)):
         subprocess.check_call(
             [get_adb()]
             + self._adb_args
@@ -55,8 +57,8 @@ class SimplePuller:
                 SimplePuller._get_tar_name(src),
                 "-C",
                 src,
-                ".",
-            ],
+            ]
+            + list(names),
             stderr=subprocess.STDOUT,
         )
 
@@ -72,16 +74,161 @@ class SimplePuller:
         # Pulling a folder with lots of files is very slow, as each file transmission needs
         # to reestablish the connection, slowing down the overall throughput.
         # Hence taring the entire folder first.
-        self._tar(src)
+        self._pull_tar(src, ["."], dest)
+
+    def _pull_tar(self, src, names, dest):
+        self._tar(src, names)
         with tempfile.NamedTemporaryFile() as f:
             self.pull(SimplePuller._get_tar_name(src), f.name)
             local_file = tarfile.open(f.name)
-            local_file.extractall(dest)
+            _extract_all(local_file, dest)
             local_file.close()
         self._remove_temp_tar(src)
 
+    def list_files_with_checksums(self, src):
+        """Returns the md5 of every file under src, keyed by its path relative
+        to src, with a single adb call. Returns None if the device can't
+        compute them, e.g. because it has no md5sum."""
+        try:
+            output = common.check_output(
+                [get_adb()]
+                + self._adb_args
+                + [
+                    "shell",
+                    "cd %s && find . -type f -exec md5sum {} + && echo CHECKSUMS_OK"
+                    % shlex.quote(src),
+                ]
+            )
+        except subprocess.CalledProcessError:
+            return None
+
+        # Older adbs don't forward the exit status of the shell command
+        lines = output.splitlines()
+        if not lines or lines[-1].strip() != "CHECKSUMS_OK":
+            return None
+
+        checksums = {}
+        for line in lines[:-1]:
+            parts = line.strip().split(None, 1)
+            if len(parts) != 2 or len(parts[0]) != 32:
+                return None
+            checksum, path = parts
+            checksums[os.path.normpath(path)] = checksum
+        return checksums
+
+    def pull_files(self, src, names, dest):
+        """Pulls the given files, relative to src, to the same paths under dest.
+        Like pull_folder, they're tarred first, in as few tars as the command
+        length allows, rather than pulled one by one."""
+        for batch in _batch_names(names):
+            self._pull_tar(src, batch, dest)
+
     def get_external_data_dir(self):
         output = common.check_output(
             [get_adb()] + self._adb_args + ["shell", "echo", "$EXTERNAL_STORAGE"]
         )
         return output.strip().split()[-1]
+
+
+class StreamingPuller(SimplePuller):
+    """Pulls folders by streaming a tar of them straight out of the device.
+
+    Unlike SimplePuller.pull_folder, nothing is written to the device's
+    storage or to a temporary file on the host: the output of tar is piped
+    through adb exec-out into the extraction.
+    """
+
+    COMPRESSION_NONE = "none"
+    # gzip at its lowest level, the emulator's CPU is usually the bottleneck
+    COMPRESSION_FAST = "fast"
+
+    def __init__(self, adb_args=[], compression=COMPRESSION_NONE):
+        super(StreamingPuller, self).__init__(adb_args)
+        if compression not in (self.COMPRESSION_NONE, self.COMPRESSION_FAST):
+            raise ValueError("Unknown compression: %s" % compression)
+        self._compression = compression
+
+    def _tar_command(self, src, names="."):
+        # Anything written to stderr would corrupt the stream on older adbs
+        command = "tar -cf - -C %s %s 2>/dev/null" % (shlex.quote(src), names)
+        if self._compression == self.COMPRESSION_FAST:
+            # A pipeline exits with the status of gzip, so a failing tar kills
+            # the shell to fail the command (not every sh has pipefail)
+            command = "{ %s || kill $$; } | gzip -1" % command
+        return command
+
+    def pull_files(self, src, names, dest):
+        """Streams the given files in as few tars as the command length allows"""
+        for batch in _batch_names(names):
+            self._stream_tar(self._tar_command(src, " ".join(batch)), dest)
+
+    def pull_folder(self, src, dest):
+        self._stream_tar(self._tar_command(src), dest)
+
+    def _stream_tar(self, command, dest):
+        process = subprocess.Popen(
+            [get_adb()] + self._adb_args + ["exec-out", command],
+            stdout=subprocess.PIPE,
+        )
+        mode = "r|gz" if self._compression == self.COMPRESSION_FAST else "r|"
+        error = None
+        try:
+            with tarfile.open(fileobj=process.stdout, mode=mode) as stream:
+                _extract_all(stream, dest)
+            # Let adb write whatever follows the end of the archive, so that it
+            # exits normally rather than on a closed pipe
+            while process.stdout.read(64 * 1024):
+                pass
+        except tarfile.TarError as e:
+            error = e
+        finally:
+            process.stdout.close()
+            returncode = process.wait()
+        # The archive can look complete even when the stream was cut short, and
+        # a failing command is a better explanation than a broken archive
+        if returncode != 0:
+            raise subprocess.CalledProcessError(returncode, process.args)
+        if error is not None:
+            raise error
+
+
+# Keeps each adb command well under the device's argument size limit
+MAX_FILES_COMMAND_LENGTH = 64 * 1024
+
+
+def _batch_names(names):
+    """Splits the given file names into lists of shell-quoted names, each short
+    enough to be passed to a single command"""
+    batch = []
+    length = 0
+    for name in names:
+        quoted = shlex.quote(name)
+        if batch and length + len(quoted) + 1 > MAX_FILES_COMMAND_LENGTH:
+            yield batch
+            batch = []
+            length = 0
+        batch.append(quoted)
+        length += len(quoted) + 1
+    if batch:
+        yield batch
+
+
+def _extract_all(archive, dest):
+    """Extracts an archive from the device, refusing any entry that would land
+    outside of dest"""
+    if hasattr(tarfile, "data_filter"):
+        archive.extractall(dest, filter="data")
+    else:
+        for member in archive:
+            _check_member(member)
+            archive.extract(member, dest)
+
+
+def _check_member(member):
+    """The checks of tarfile's "data" filter that matter for our archives, for
+    Pythons that don't have it"""
+    if not (member.isfile() or member.isdir()):
+        raise tarfile.TarError("Unexpected entry in archive: %s" % member.name)
+    name = member.name.replace("\\", "/")
+    if name.startswith("/") or ".." in name.split("/"):
+        raise tarfile.TarError("Entry outside of the archive: %s" % member.name)
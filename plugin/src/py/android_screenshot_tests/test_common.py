@@ -49,3 +49,41 @@ class TestCommon(unittest.TestCase):
     def test_get_adb_can_run_in_subprocess(self):
         os.environ["ANDROID_SDK"] = self.android_sdk
         subprocess.check_call([common.get_adb(), "devices"])
+
+
+class TestTileFileNames(unittest.TestCase):
+    def test_tiles_are_named_after_screenshot(self):
+        screenshot = {"name": "foo", "tileWidth": 2, "tileHeight": 2}
+        self.assertEqual("foo.png", common.get_tile_file_name(screenshot, 0, 0))
+        self.assertEqual("foo_1_0.png", common.get_tile_file_name(screenshot, 1, 0))
+
+    def test_content_addressed_tiles_are_named_after_hash(self):
+        screenshot = {
+            "name": "foo",
+            "tileWidth": 2,
+            "tileHeight": 2,
+            "contentAddressed": True,
+            "tileHashes": ["a0", "a1", "b0", "b1"],
+        }
+        self.assertEqual("a0.png", common.get_tile_file_name(screenshot, 0, 0))
+        self.assertEqual("a1.png", common.get_tile_file_name(screenshot, 0, 1))
+        self.assertEqual("b0.png", common.get_tile_file_name(screenshot, 1, 0))
+
+
+class TestUniformTiles(unittest.TestCase):
+    def test_uniform_tiles_are_found_by_position(self):
+        screenshot = {
+            "name": "foo",
+            "tileWidth": 2,
+            "tileHeight": 1,
+            "uniformTiles": [
+                {"x": 1, "y": 0, "color": "#80ff0000", "width": 10, "height": 20}
+            ],
+        }
+        self.assertIsNone(common.get_uniform_tile(screenshot, 0, 0))
+        tile = common.get_uniform_tile(screenshot, 1, 0)
+        self.assertEqual(10, tile["width"])
+        self.assertEqual((255, 0, 0, 128), common.get_uniform_tile_rgba(tile))
+
+    def test_no_uniform_tiles(self):
+        self.assertIsNone(common.get_uniform_tile({"name": "foo"}, 0, 0))
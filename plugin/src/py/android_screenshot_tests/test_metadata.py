@@ -67,6 +67,19 @@ class TestMetadata(unittest.TestCase):
 
         self.assertEqual(7, self.get_num_screenshots_in(self.tmp_metadata))
 
+    def test_compact_journal_skips_partial_entries(self):
+        fd, journal = tempfile.mkstemp(prefix="TempMetadataJournal")
+        with os.fdopen(fd, "w") as f:
+            f.write('{"name": "foo"}\n{"name": "bar"}\n{"name": "ba')
+
+        try:
+            metadata.compact_journal(journal, self.tmp_metadata)
+        finally:
+            os.unlink(journal)
+
+        with open(self.tmp_metadata, "r") as f:
+            self.assertEqual(["foo", "bar"], [s["name"] for s in json.load(f)])
+
     def get_num_screenshots_in(self, metadata_file):
         with open(metadata_file, "r") as f:
             parsed = json.load(f)
@@ -0,0 +1,112 @@
+#!/usr/bin/env python3
+# Copyright (c) Meta Platforms, Inc. and affiliates.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#     http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+
+import hashlib
+import os
+import shutil
+import tempfile
+import unittest
+from os.path import join
+
+from .pull_cache import PullCache
+
+
+class FakePuller:
+    """Serves the files of a local directory as if it were on the device"""
+
+    def __init__(self, files):
+        self.files = files
+        self.pulled = []
+
+    def list_files_with_checksums(self, src):
+        return {
+            name: hashlib.md5(content).hexdigest()
+            for name, content in self.files.items()
+        }
+
+    def pull_files(self, src, names, dest):
+        for name in names:
+            self.pulled.append(name)
+            path = join(dest, name)
+            os.makedirs(os.path.dirname(path), exist_ok=True)
+            with open(path, "wb") as f:
+                f.write(self.files[name])
+
+
+class TestPullCache(unittest.TestCase):
+    def setUp(self):
+        self.tmpdir = tempfile.mkdtemp(prefix="pullcache")
+        self.cache = PullCache(join(self.tmpdir, "cache"))
+
+    def tearDown(self):
+        shutil.rmtree(self.tmpdir)
+
+    def _read(self, path):
+        with open(path, "rb") as f:
+            return f.read()
+
+    def test_only_pulls_new_and_changed_files(self):
+        puller = FakePuller({"a.png": b"a", "sub/b.png": b"b"})
+        out = join(self.tmpdir, "1")
+        self.assertEqual(2, self.cache.pull_folder(puller, "/sdcard/run", out))
+
+        puller = FakePuller({"a.png": b"a", "sub/b.png": b"changed", "c.png": b"c"})
+        out = join(self.tmpdir, "2")
+        self.assertEqual(2, self.cache.pull_folder(puller, "/sdcard/run", out))
+
+        self.assertEqual(["c.png", "sub/b.png"], puller.pulled)
+        self.assertEqual(b"a", self._read(join(out, "a.png")))
+        self.assertEqual(b"changed", self._read(join(out, "sub/b.png")))
+        self.assertEqual(b"c", self._read(join(out, "c.png")))
+
+    def test_identical_files_are_linked_from_the_cache(self):
+        puller = FakePuller({"a.png": b"a", "copy.png": b"a"})
+        self.cache.pull_folder(puller, "/sdcard/run", join(self.tmpdir, "1"))
+        out = join(self.tmpdir, "2")
+        self.assertEqual(0, self.cache.pull_folder(puller, "/sdcard/run", out))
+
+        self.assertTrue(os.path.samefile(join(out, "a.png"), join(out, "copy.png")))
+
+    def test_does_not_cache_files_that_dont_match_their_checksum(self):
+        puller = FakePuller({"a.png": b"a"})
+        puller.list_files_with_checksums = lambda src: {"a.png": "0" * 32}
+        self.cache.pull_folder(puller, "/sdcard/run", join(self.tmpdir, "1"))
+        self.assertEqual(
+            1, self.cache.pull_folder(puller, "/sdcard/run", join(self.tmpdir, "2"))
+        )
+
+
+    def test_pulling_into_the_same_dir_does_not_change_the_cache(self):
+        out = join(self.tmpdir, "out")
+        self.cache.pull_folder(FakePuller({"a.png": b"a"}), "/sdcard/run", out)
+        self.cache.pull_folder(FakePuller({"a.png": b"changed"}), "/sdcard/run", out)
+
+        self.assertEqual(b"changed", self._read(join(out, "a.png")))
+        other = join(self.tmpdir, "other")
+        puller = FakePuller({"a.png": b"a"})
+        self.assertEqual(0, self.cache.pull_folder(puller, "/sdcard/run", other))
+        self.assertEqual(b"a", self._read(join(other, "a.png")))
+
+    def test_nothing_is_pulled_without_checksums(self):
+        puller = FakePuller({"a.png": b"a"})
+        puller.list_files_with_checksums = lambda src: None
+        out = join(self.tmpdir, "out")
+
+        self.assertIsNone(self.cache.pull_folder(puller, "/sdcard/run", out))
+        self.assertEqual([], puller.pulled)
+
+
+if __name__ == "__main__":
+    unittest.main()
@@ -20,6 +20,7 @@ import json
 import os
 import shutil
 import sys
+import tarfile
 import tempfile
 import unittest
 from os.path import join
@@ -131,6 +132,54 @@ class TestAdbHelpers(unittest.TestCase):
 
         self.assertTrue(os.path.exists(self.tmpdir + "/metadata.json"))
 
+    def test_pull_metadata_from_journal(self):
+        fixture_dir = tempfile.mkdtemp(prefix="fixtures")
+        device_dir = join(
+            fixture_dir,
+            "sdcard/screenshots/com.facebook.testing.tests/screenshots-default",
+        )
+        os.makedirs(device_dir)
+        with open(join(device_dir, "metadata.jsonl"), "w") as f:
+            f.write('{"name": "foo"}\n{"name": "bar"}\n')
+
+        try:
+            pull_screenshots.pull_metadata(
+                "com.facebook.testing.tests",
+                self.tmpdir,
+                adb_puller=AdbPuller(fixture_dir),
+            )
+        finally:
+            shutil.rmtree(fixture_dir)
+
+        with open(join(self.tmpdir, "metadata.json")) as f:
+            self.assertEqual(["foo", "bar"], [s["name"] for s in json.load(f)])
+        self.assertFalse(os.path.exists(join(self.tmpdir, "metadata.jsonl")))
+
+    def test_pull_metadata_prefers_journal(self):
+        fixture_dir = tempfile.mkdtemp(prefix="fixtures")
+        device_dir = join(
+            fixture_dir,
+            "sdcard/screenshots/com.facebook.testing.tests/screenshots-default",
+        )
+        os.makedirs(device_dir)
+        # Flushed by an earlier process, before a later one crashed
+        with open(join(device_dir, "metadata.json"), "w") as f:
+            f.write('[{"name": "foo"}]')
+        with open(join(device_dir, "metadata.jsonl"), "w") as f:
+            f.write('{"name": "foo"}\n{"name": "bar"}\n{"name": "baz", "extras": {}\n')
+
+        try:
+            pull_screenshots.pull_metadata(
+                "com.facebook.testing.tests",
+                self.tmpdir,
+                adb_puller=AdbPuller(fixture_dir),
+            )
+        finally:
+            shutil.rmtree(fixture_dir)
+
+        with open(join(self.tmpdir, "metadata.json")) as f:
+            self.assertEqual(["foo", "bar"], [s["name"] for s in json.load(f)])
+
 
 class TestPullScreenshots(unittest.TestCase):
     def setUp(self):
@@ -248,6 +297,46 @@ class TestPullScreenshots(unittest.TestCase):
             message = f.read()
             assertRegex(self, message, ".*3 screenshots.*")
 
+    def test_summary_lists_slowest_screenshots(self):
+        metadata = [
+            {"name": "fast", "timings": {"draw": 1.0, "total": 2.0}},
+            {"name": "untimed"},
+            {"name": "slow", "timings": {"draw": 40.0, "encode": 8.5, "total": 50.0}},
+        ]
+        with tempfile.NamedTemporaryFile(mode="w+t") as f:
+            sys.stdout = f
+            pull_screenshots._print_slowest_screenshots(metadata, limit=1)
+            sys.stdout.flush()
+
+            f.seek(0)
+            message = f.read()
+            assertRegex(self, message, "50.0ms  slow \\(draw 40.0ms, encode 8.5ms\\)")
+            self.assertNotIn("fast", message)
+            self.assertNotIn("untimed", message)
+
+    def test_extract_artifact_archives(self):
+        self.tmpdir = tempfile.mkdtemp(prefix="screenshots")
+        archive_contents = {
+            "artifacts_0.tar": {"foo.png": b"foo", "foo_dump.json": b"{}"},
+            "artifacts_1.tar": {"bar.png": b"bar"},
+        }
+        for archive, files in archive_contents.items():
+            with tarfile.open(join(self.tmpdir, archive), "w") as tar:
+                for name, content in files.items():
+                    source = join(self.tmpdir, "source")
+                    with open(source, "wb") as f:
+                        f.write(content)
+                    tar.add(source, arcname=name)
+                    os.unlink(source)
+
+        pull_screenshots.extract_artifact_archives(self.tmpdir)
+
+        self.assertEqual(
+            ["bar.png", "foo.png", "foo_dump.json"], sorted(os.listdir(self.tmpdir))
+        )
+        with open(join(self.tmpdir, "bar.png"), "rb") as f:
+            self.assertEqual(b"bar", f.read())
+
     def test_setup_paths(self):
         os.environ["ANDROID_SDK"] = "foobar"
         pull_screenshots.setup_paths()
@@ -298,6 +387,42 @@ class TestPullScreenshots(unittest.TestCase):
         except RuntimeError as e:
             assertRegex(self, e.args[0], "You must supply a directory for temp_dir")
 
+    def test_pull_screenshots_from_devices_in_parallel(self):
+        pulled = []
+        processed = []
+
+        def fake_pull_filtered(process, adb_puller, dir, **kwargs):
+            pulled.append(dir)
+            if dir.endswith("emulator-5556"):
+                raise RuntimeError("pull failed")
+
+        def fake_process_screenshots(temp_dir, **kwargs):
+            processed.append(temp_dir)
+
+        original_pull_filtered = pull_screenshots.pull_filtered
+        original_process_screenshots = pull_screenshots.process_screenshots
+        pull_screenshots.pull_filtered = fake_pull_filtered
+        pull_screenshots.process_screenshots = fake_process_screenshots
+        tmpdir = tempfile.mkdtemp(prefix="screenshots")
+        try:
+            failures = pull_screenshots.pull_screenshots_from_devices(
+                TESTING_PACKAGE,
+                [["-s", "emulator-5554"], ["-s", "emulator-5556"]],
+                parallel_devices=2,
+                temp_dir=tmpdir,
+            )
+        finally:
+            pull_screenshots.pull_filtered = original_pull_filtered
+            pull_screenshots.process_screenshots = original_process_screenshots
+            shutil.rmtree(tmpdir)
+
+        self.assertEqual(1, failures)
+        self.assertEqual(
+            [join(tmpdir, "emulator-5554"), join(tmpdir, "emulator-5556")],
+            sorted(pulled),
+        )
+        self.assertEqual([join(tmpdir, "emulator-5554")], processed)
+
     def test_screenshots_with_same_group_ordered_together(self):
         loaded_json = json.loads(
             # language=json
@@ -0,0 +1,83 @@
+#!/usr/bin/env python3
+# Copyright (c) Meta Platforms, Inc. and affiliates.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#     http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+
+import os
+import shutil
+import struct
+import tempfile
+import unittest
+import zlib
+from os.path import exists, join
+
+from . import raw_tiles
+
+
+def _write_raw_tile(path, width, height, pixels, compression=0):
+    with open(path, "wb") as f:
+        f.write(struct.pack(">4sBBBBii", b"SSRT", 1, compression, 1, 0, width, height))
+        f.write(zlib.compress(pixels, 1) if compression == 1 else pixels)
+
+
+class TestRawTiles(unittest.TestCase):
+    def setUp(self):
+        self.dir = tempfile.mkdtemp()
+
+    def tearDown(self):
+        shutil.rmtree(self.dir)
+
+    def test_read_uncompressed(self):
+        path = join(self.dir, "foo.rgba")
+        _write_raw_tile(path, 2, 1, b"\x01\x02\x03\x04\x05\x06\x07\x08")
+
+        width, height, premultiplied, pixels = raw_tiles.read_raw_tile(path)
+        self.assertEqual((2, 1, True), (width, height, premultiplied))
+        self.assertEqual(b"\x01\x02\x03\x04\x05\x06\x07\x08", pixels)
+
+    def test_read_deflated(self):
+        path = join(self.dir, "foo.rgba")
+        _write_raw_tile(path, 2, 2, b"\xff" * 16, compression=1)
+
+        self.assertEqual(b"\xff" * 16, raw_tiles.read_raw_tile(path)[3])
+
+    def test_truncated_tile_is_rejected(self):
+        path = join(self.dir, "foo.rgba")
+        _write_raw_tile(path, 2, 2, b"\xff" * 8)
+
+        with self.assertRaises(ValueError):
+            raw_tiles.read_raw_tile(path)
+
+    def test_find_raw_tiles(self):
+        _write_raw_tile(join(self.dir, "foo.rgba"), 1, 1, b"\x00" * 4)
+        open(join(self.dir, "bar.png"), "w").close()
+
+        self.assertEqual(
+            [join(self.dir, "foo.rgba")], raw_tiles.find_raw_tiles(self.dir)
+        )
+
+    def test_convert_raw_tiles(self):
+        try:
+            from PIL import Image
+        except ImportError:
+            self.skipTest("PIL is not available")
+
+        # Half transparent red, premultiplied
+        _write_raw_tile(join(self.dir, "foo.rgba"), 1, 1, b"\x80\x00\x00\x80")
+        raw_tiles.convert_raw_tiles(self.dir)
+
+        self.assertFalse(exists(join(self.dir, "foo.rgba")))
+        with Image.open(join(self.dir, "foo.png")) as im:
+            red, _, _, alpha = im.getpixel((0, 0))
+            self.assertEqual(128, alpha)
+            self.assertGreater(red, 250)
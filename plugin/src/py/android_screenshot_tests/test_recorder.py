@@ -102,6 +102,38 @@ class TestRecorder(unittest.TestCase):
         self.assertTrue(exists(join(self.outputdir, "foo.png")))
         self.assertTrue(exists(join(self.outputdir, "bar.png")))
 
+    def test_stitches_in_parallel(self):
+        self.recorder = Recorder(
+            self.inputdir, self.outputdir, self.failureDir, processes=2
+        )
+        self.test_two_files()
+
+    def test_sizes_from_metadata(self):
+        self.create_temp_image("foobar.png", (8, 10), "blue")
+        self.create_temp_image("foobar_1_0.png", (4, 10), "red")
+        self.make_metadata(
+            # language=json
+            """
+            [
+                {
+                    "name": "foobar",
+                    "tileWidth": 2,
+                    "tileHeight": 1,
+                    "tilePixelWidth": 8,
+                    "tilePixelHeight": 16,
+                    "imageWidth": 12,
+                    "imageHeight": 10
+                }
+            ]"""
+        )
+
+        self.recorder.record()
+
+        with Image.open(join(self.outputdir, "foobar.png")) as im:
+            self.assertEqual((12, 10), im.size)
+            self.assertEqual((0, 0, 255, 255), im.getpixel((7, 1)))
+            self.assertEqual((255, 0, 0, 255), im.getpixel((8, 1)))
+
     def test_one_col_tiles(self):
         self.create_temp_image("foobar.png", (10, 10), "blue")
         self.create_temp_image("foobar_0_1.png", (10, 10), "red")
@@ -186,6 +218,52 @@ class TestRecorder(unittest.TestCase):
             self.assertEqual((0, 0, 255, 255), im.getpixel((11, 11)))
             self.assertEqual((255, 0, 0, 255), im.getpixel((1, 11)))
 
+    def test_content_addressed_tiles(self):
+        self.create_temp_image("abc.png", (10, 10), "blue")
+        self.make_metadata(
+            # language=json
+            """
+            [
+                {
+                    "name": "foobar",
+                    "tileWidth": 2,
+                    "tileHeight": 1,
+                    "contentAddressed": true,
+                    "tileHashes": ["abc", "abc"]
+                }
+            ]"""
+        )
+
+        self.recorder.record()
+
+        with Image.open(join(self.outputdir, "foobar.png")) as im:
+            self.assertEqual((20, 10), im.size)
+            self.assertEqual((0, 0, 255, 255), im.getpixel((15, 1)))
+
+    def test_uniform_tiles(self):
+        self.create_temp_image("foobar.png", (10, 10), "blue")
+        self.make_metadata(
+            # language=json
+            """
+            [
+                {
+                    "name": "foobar",
+                    "tileWidth": 2,
+                    "tileHeight": 1,
+                    "uniformTiles": [
+                        {"x": 1, "y": 0, "color": "#ffff0000", "width": 5, "height": 10}
+                    ]
+                }
+            ]"""
+        )
+
+        self.recorder.record()
+
+        with Image.open(join(self.outputdir, "foobar.png")) as im:
+            self.assertEqual((15, 10), im.size)
+            self.assertEqual((0, 0, 255, 255), im.getpixel((1, 1)))
+            self.assertEqual((255, 0, 0, 255), im.getpixel((12, 1)))
+
     def test_verify_success(self):
         self.create_temp_image("foobar.png", (10, 10), "blue")
         self.make_metadata(
@@ -244,5 +322,45 @@ class TestRecorder(unittest.TestCase):
             self.assertEqual((0, 128, 0, 255), im.getpixel((9, 1)))
 
 
+    def test_verify_compares_each_tile(self):
+        self.create_temp_image("foo.png", (10, 10), "blue")
+        self.create_temp_image("foo_1_0.png", (5, 10), "blue")
+        self.create_temp_image("bar.png", (10, 10), "blue")
+        self.make_metadata(
+            # language=json
+            """
+            [
+                {
+                    "name": "foo",
+                    "tileWidth": 2,
+                    "tileHeight": 1
+                },
+                {
+                    "name": "bar",
+                    "tileWidth": 1,
+                    "tileHeight": 1
+                }
+            ]"""
+        )
+        self.recorder.record()
+        self.recorder.verify()
+
+        os.unlink(join(self.inputdir, "foo_1_0.png"))
+        self.create_temp_image("foo_1_0.png", (5, 10), "red")
+        self.recorder = Recorder(
+            self.inputdir, self.outputdir, self.failureDir, processes=2
+        )
+        with self.assertRaises(VerifyError):
+            self.recorder.verify()
+
+        self.assertEqual(
+            ["foo_actual.png", "foo_diff.png", "foo_expected.png"],
+            sorted(os.listdir(self.failureDir)),
+        )
+        with Image.open(join(self.failureDir, "foo_actual.png")) as im:
+            self.assertEqual((15, 10), im.size)
+            self.assertEqual((255, 0, 0, 255), im.getpixel((12, 5)))
+
+
 if __name__ == "__main__":
     unittest.main()
@@ -23,7 +23,7 @@ import unittest
 
 from . import common
 from .common import get_adb
-from .simple_puller import SimplePuller
+from .simple_puller import SimplePuller, StreamingPuller
 
 
 class TestSimplePuller(unittest.TestCase):
@@ -63,6 +63,39 @@ class TestSimplePuller(unittest.TestCase):
         self.assertIn(self.puller.get_external_data_dir(), accepted_dirs)
 
     def test_pull_folder(self):
+        self._check_pull_folder()
+
+    def test_pull_folder_streaming(self):
+        for compression in [
+            StreamingPuller.COMPRESSION_NONE,
+            StreamingPuller.COMPRESSION_FAST,
+        ]:
+            self.puller = StreamingPuller(compression=compression)
+            self._check_pull_folder()
+
+    def test_pull_files(self):
+        subprocess.check_call(
+            [
+                get_adb(),
+                "shell",
+                "mkdir -p /sdcard/folder/a && echo foo > /sdcard/folder/a/one.png "
+                "&& echo bar > /sdcard/folder/two.png",
+            ]
+        )
+        for puller in [SimplePuller(), StreamingPuller()]:
+            dest = tempfile.mkdtemp(dir=self.tmpdir)
+            puller.pull_files("/sdcard/folder", ["a/one.png", "two.png"], dest)
+
+            with open(os.path.join(dest, "a", "one.png"), "rt") as f:
+                self.assertEqual("foo\n", f.read())
+            with open(os.path.join(dest, "two.png"), "rt") as f:
+                self.assertEqual("bar\n", f.read())
+
+    def test_streaming_puller_rejects_unknown_compression(self):
+        with self.assertRaises(ValueError):
+            StreamingPuller(compression="zstd")
+
+    def _check_pull_folder(self):
         target_remote_folder = "/sdcard/folder"
         target_remote_sub_folders = [".", "a", "b"]
         subprocess.check_call([get_adb(), "shell", f"mkdir -p {target_remote_folder}"])